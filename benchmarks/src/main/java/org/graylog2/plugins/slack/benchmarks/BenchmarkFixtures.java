@@ -0,0 +1,77 @@
+package org.graylog2.plugins.slack.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Map;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugins.slack.SlackClient;
+import org.graylog2.plugins.slack.SlackFixtures;
+import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackResponse;
+import org.graylog2.plugins.slack.SlackTransport;
+import org.graylog2.plugins.slack.StageTimer;
+
+/**
+ * Benchmark settings and payloads. Messages, streams and alert results come from {@link
+ * SlackFixtures} in the plugin's test jar, which the load test uses as well.
+ */
+final class BenchmarkFixtures {
+  private BenchmarkFixtures() {}
+
+  static Configuration configuration(boolean shortMode, int backlogItems) {
+    final Map<String, Object> config =
+        SlackFixtures.configuration(
+            "https://hooks.slack.com/services/T000/B000/XXXX", backlogItems);
+    config.put("short_mode", shortMode);
+    config.put("message_icon", ":graylog:");
+    config.put("acknowledge", true);
+    config.put("preformat", true);
+    return new Configuration(config);
+  }
+
+  static SlackMessage slackMessage(int attachments) {
+    final SlackMessage message =
+        new SlackMessage(
+            "@jdoe <https://graylog.example.com/streams/1/messages|Production errors> "
+                + "had 120 messages in the last 5 minutes",
+            "#alerts",
+            "Graylog",
+            ":graylog:",
+            true);
+    for (int i = 0; i < attachments; i++) {
+      final Message item = SlackFixtures.message(i);
+      final SlackMessage.Attachment attachment =
+          message.addAttachment(
+              "```" + item.getMessage() + "```",
+              "#FF0000",
+              "<https://graylog.example.com/messages/graylog_0/" + item.getId() + "|app-server>",
+              null,
+              item.getTimestamp().getMillis() / 1000,
+              item.getId(),
+              new ArrayList<>());
+      attachment.setMarkdownIn("text");
+      attachment.addField(new SlackMessage.AttachmentField("level", "3", true));
+      attachment.addField(new SlackMessage.AttachmentField("http_status", "500", true));
+      attachment.addField(
+          new SlackMessage.AttachmentField("request_path", "/api/v2/orders/100042", true));
+    }
+    return message;
+  }
+
+  /** A transport that encodes the payload like a real send, but never touches the network. */
+  static class StubTransport implements SlackTransport {
+    long bytes;
+
+    @Override
+    public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer)
+        throws SlackClient.SlackClientException {
+      try {
+        bytes += message.getJsonString().length();
+      } catch (Exception e) {
+        throw new SlackClient.SlackClientException("Could not encode message.", e);
+      }
+      return SlackResponse.SUCCESS;
+    }
+  }
+}
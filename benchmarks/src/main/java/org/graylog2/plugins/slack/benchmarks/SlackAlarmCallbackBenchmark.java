@@ -0,0 +1,62 @@
+package org.graylog2.plugins.slack.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.concurrent.TimeUnit;
+import org.graylog2.plugin.alarms.AlertCondition;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugins.slack.SlackConnectionWarmer;
+import org.graylog2.plugins.slack.SlackFixtures;
+import org.graylog2.plugins.slack.SlackPluginConfiguration;
+import org.graylog2.plugins.slack.SlackStatistics;
+import org.graylog2.plugins.slack.callback.SlackAlarmCallback;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlackAlarmCallbackBenchmark {
+  /** Number of messages in the alert backlog. */
+  @Param({"1", "10", "100"})
+  public int backlogSize;
+
+  /** Number of backlog items rendered as attachments. */
+  @Param({"1", "10", "50"})
+  public int backlogItems;
+
+  private SlackAlarmCallback callback;
+  private BenchmarkFixtures.StubTransport transport;
+  private Stream stream;
+  private AlertCondition.CheckResult result;
+
+  @Setup
+  public void setUp() throws Exception {
+    transport = new BenchmarkFixtures.StubTransport();
+    callback =
+        new SlackAlarmCallback(
+            new SlackStatistics(new MetricRegistry()),
+            new SlackConnectionWarmer(new SlackPluginConfiguration()),
+            config -> transport);
+    callback.initialize(BenchmarkFixtures.configuration(false, backlogItems));
+    stream = SlackFixtures.stream();
+    result = SlackFixtures.checkResult(backlogSize);
+  }
+
+  @Benchmark
+  public long call() throws Exception {
+    callback.call(stream, result);
+    return transport.bytes;
+  }
+}
@@ -0,0 +1,44 @@
+package org.graylog2.plugins.slack.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.util.concurrent.TimeUnit;
+import org.graylog2.plugins.slack.SlackMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlackMessageBenchmark {
+  @Param({"0", "1", "10", "50"})
+  public int attachments;
+
+  private SlackMessage message;
+
+  @Setup
+  public void setUp() {
+    message = BenchmarkFixtures.slackMessage(attachments);
+  }
+
+  @Benchmark
+  public String getJsonString() throws JsonProcessingException {
+    return message.getJsonString();
+  }
+
+  @Benchmark
+  public String getRequestString() {
+    return message.getRequestString();
+  }
+}
@@ -0,0 +1,55 @@
+package org.graylog2.plugins.slack.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.concurrent.TimeUnit;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugins.slack.SlackClient;
+import org.graylog2.plugins.slack.SlackFixtures;
+import org.graylog2.plugins.slack.SlackStatistics;
+import org.graylog2.plugins.slack.output.SlackMessageOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlackMessageOutputBenchmark {
+  @Param({"true", "false"})
+  public boolean shortMode;
+
+  private SlackMessageOutput output;
+  private BenchmarkFixtures.StubTransport transport;
+  private Message message;
+
+  @Setup
+  public void setUp() throws Exception {
+    final Configuration configuration = BenchmarkFixtures.configuration(shortMode, 1);
+    transport = new BenchmarkFixtures.StubTransport();
+    output =
+        new SlackMessageOutput(
+            SlackFixtures.stream(),
+            configuration,
+            new SlackClient(transport),
+            new SlackStatistics(new MetricRegistry()));
+    message = SlackFixtures.message(1);
+  }
+
+  @Benchmark
+  public long write() throws Exception {
+    output.write(message);
+    return transport.bytes;
+  }
+}
@@ -0,0 +1,41 @@
+package org.graylog2.plugins.slack.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.graylog2.plugins.slack.SlackFixtures;
+import org.graylog2.plugins.slack.StringReplacement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringReplacementBenchmark {
+  private Map<String, Object> fields;
+
+  @Setup
+  public void setUp() {
+    fields = SlackFixtures.message(1).getFields();
+  }
+
+  @Benchmark
+  public String replace() {
+    return StringReplacement.replace(SlackFixtures.FOOTER_TEMPLATE, fields);
+  }
+
+  @Benchmark
+  public String replaceWithPrefix() {
+    return StringReplacement.replaceWithPrefix(SlackFixtures.NOTIFY_TEMPLATE, "@", fields);
+  }
+}
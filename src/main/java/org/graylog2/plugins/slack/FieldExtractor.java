@@ -0,0 +1,185 @@
+package org.graylog2.plugins.slack;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+/**
+ * Reads and formats one backlog field for a Slack attachment. Extractors are compiled once from the
+ * <code>custom_fields</code> setting, a comma separated list of <code>field[|format]</code>.
+ *
+ * <p>A field may be a dotted path like <code>http.request.method</code>. The message field with
+ * exactly that name is used if present, otherwise the path is looked up in nested maps. Supported
+ * formats are:
+ *
+ * <ul>
+ *   <li><code>number</code>: numbers with thousands separators, e.g. <code>12,345.679</code>
+ *   <li><code>date</code>: dates and epoch milliseconds in UTC, e.g. <code>2018-05-01 12:34:56.789
+ *       UTC</code>
+ *   <li>a positive integer: maximum length, longer values are cut and end with an ellipsis
+ * </ul>
+ *
+ * <p>Extractors are immutable and may be used by several threads.
+ */
+public final class FieldExtractor {
+  private static final char FORMAT_DELIMITER = '|';
+  private static final DateTimeFormatter DATE_FORMAT =
+      DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss.SSS z").withZone(DateTimeZone.UTC);
+  private static final ThreadLocal<DecimalFormat> NUMBER_FORMAT =
+      ThreadLocal.withInitial(
+          () -> new DecimalFormat("#,##0.###", DecimalFormatSymbols.getInstance(Locale.ENGLISH)));
+
+  private enum Format {
+    TEXT,
+    NUMBER,
+    DATE
+  }
+
+  private final String name;
+  private final String[] path;
+  private final Format format;
+  private final int maxLength;
+
+  private FieldExtractor(String name, Format format, int maxLength) {
+    this.name = name;
+    this.path = name.indexOf('.') < 0 ? null : name.split("\\.");
+    this.format = format;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Compile a list of field specifications.
+   *
+   * @param spec comma separated <code>field[|format]</code>, may be null
+   * @return one extractor per non-empty field, in order
+   * @throws IllegalArgumentException if a format is unknown
+   */
+  public static FieldExtractor[] compile(String spec) {
+    if (spec == null) {
+      return new FieldExtractor[0];
+    }
+    final List<FieldExtractor> extractors = new ArrayList<>();
+    for (String field : spec.split(",")) {
+      field = field.trim();
+      if (field.isEmpty()) {
+        continue;
+      }
+      final int delimiter = field.indexOf(FORMAT_DELIMITER);
+      if (delimiter < 0) {
+        extractors.add(new FieldExtractor(field, Format.TEXT, 0));
+      } else {
+        extractors.add(
+            compile(field.substring(0, delimiter).trim(), field.substring(delimiter + 1).trim()));
+      }
+    }
+    return extractors.toArray(new FieldExtractor[0]);
+  }
+
+  private static FieldExtractor compile(String name, String format) {
+    if ("number".equals(format)) {
+      return new FieldExtractor(name, Format.NUMBER, 0);
+    }
+    if ("date".equals(format)) {
+      return new FieldExtractor(name, Format.DATE, 0);
+    }
+    try {
+      final int maxLength = Integer.parseInt(format);
+      if (maxLength > 0) {
+        return new FieldExtractor(name, Format.TEXT, maxLength);
+      }
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new IllegalArgumentException("Unknown format \"" + format + "\" of field " + name);
+  }
+
+  /** Field name, used as attachment field title. */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Read and format the field of a message, without copying its fields.
+   *
+   * @param message a backlog message
+   * @return formatted value, or null if the message has no such field
+   */
+  public String extract(Message message) {
+    Object value = message.getField(name);
+    if (value == null && path != null) {
+      value = lookup(message.getField(path[0]));
+    }
+    return format(value);
+  }
+
+  private String format(Object value) {
+    if (value == null) {
+      return null;
+    }
+    final String text;
+    switch (format) {
+      case NUMBER:
+        text = formatNumber(value);
+        break;
+      case DATE:
+        text = formatDate(value);
+        break;
+      default:
+        text = value.toString();
+    }
+    if (maxLength > 0 && text.length() > maxLength) {
+      return text.substring(0, maxLength - 1) + '\u2026';
+    }
+    return text;
+  }
+
+  /** Follows the rest of the path from the value of its first segment. */
+  private Object lookup(Object root) {
+    Object value = root;
+    for (int i = 1; i < path.length; i++) {
+      if (!(value instanceof Map)) {
+        return null;
+      }
+      value = ((Map<?, ?>) value).get(path[i]);
+    }
+    return value;
+  }
+
+  private static String formatNumber(Object value) {
+    if (value instanceof Number) {
+      return NUMBER_FORMAT.get().format(value);
+    }
+    try {
+      return NUMBER_FORMAT.get().format(new BigDecimal(value.toString().trim()));
+    } catch (NumberFormatException e) {
+      return value.toString();
+    }
+  }
+
+  private static String formatDate(Object value) {
+    try {
+      if (value instanceof DateTime) {
+        return DATE_FORMAT.print((DateTime) value);
+      }
+      if (value instanceof Date) {
+        return DATE_FORMAT.print(((Date) value).getTime());
+      }
+      if (value instanceof Number) {
+        return DATE_FORMAT.print(((Number) value).longValue());
+      }
+      return DATE_FORMAT.print(new DateTime(value.toString(), DateTimeZone.UTC));
+    } catch (IllegalArgumentException e) {
+      return value.toString();
+    }
+  }
+}
@@ -0,0 +1,331 @@
+package org.graylog2.plugins.slack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.graylog2.plugin.Message;
+
+/**
+ * A predicate over message fields, compiled once from the <code>filter</code> setting of an output.
+ *
+ * <p>An expression combines conditions with <code>AND</code>, <code>OR</code>, <code>NOT</code> and
+ * parentheses (or <code>&amp;&amp;</code>, <code>||</code> and <code>!</code>). A condition is
+ *
+ * <ul>
+ *   <li><code>field</code>: the message has the field
+ *   <li><code>field = value</code>, <code>field != value</code>: equality, numeric if both sides
+ *       are numbers
+ *   <li><code>field &lt; value</code>, <code>&lt;=</code>, <code>&gt;</code>, <code>&gt;=</code>:
+ *       numeric comparison, false if the field is not a number
+ *   <li><code>field =~ "regex"</code>, <code>field !~ "regex"</code>: the field contains a match
+ * </ul>
+ *
+ * <p>Values may be quoted with single or double quotes. Fields are read like {@link
+ * FieldExtractor} reads them, so dotted paths look into nested maps, and a condition on a missing
+ * field is false. For example: <code>level &lt;= 3 AND NOT source =~ "^test-"</code>.
+ *
+ * <p>Filters are immutable and may be used by several threads.
+ */
+public final class MessageFilter {
+  /** Matches every message. */
+  public static final MessageFilter ALL = new MessageFilter(message -> true);
+
+  private final Node root;
+
+  private MessageFilter(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Compile a filter expression.
+   *
+   * @param expression a filter expression, may be null
+   * @return the filter, {@link #ALL} if the expression is null or blank
+   * @throws IllegalArgumentException if the expression is invalid
+   */
+  public static MessageFilter compile(String expression) {
+    if (expression == null || expression.trim().isEmpty()) {
+      return ALL;
+    }
+    return new MessageFilter(new Parser(expression).parse());
+  }
+
+  public boolean matches(Message message) {
+    return root.test(message);
+  }
+
+  private interface Node {
+    boolean test(Message message);
+  }
+
+  private static final class Field {
+    private final String name;
+    private final String[] path;
+
+    private Field(String name) {
+      this.name = name;
+      this.path = name.indexOf('.') < 0 ? null : name.split("\\.");
+    }
+
+    private Object get(Message message) {
+      final Object value = message.getField(name);
+      if (value != null || path == null) {
+        return value;
+      }
+      Object nested = message.getField(path[0]);
+      for (int i = 1; i < path.length; i++) {
+        if (!(nested instanceof Map)) {
+          return null;
+        }
+        nested = ((Map<?, ?>) nested).get(path[i]);
+      }
+      return nested;
+    }
+  }
+
+  private static final class Comparison implements Node {
+    private final Field field;
+    private final String operator;
+    private final String text;
+    private final double number;
+    private final boolean numeric;
+
+    private Comparison(Field field, String operator, String text) {
+      this.field = field;
+      this.operator = operator;
+      this.text = text;
+      final Double parsed = toDouble(text);
+      this.numeric = parsed != null;
+      this.number = numeric ? parsed : Double.NaN;
+      if (!numeric && !"=".equals(operator)) {
+        throw new IllegalArgumentException(
+            "Expected a number after " + field.name + ' ' + operator + ", found " + text);
+      }
+    }
+
+    @Override
+    public boolean test(Message message) {
+      final Object value = field.get(message);
+      if (value == null) {
+        return false;
+      }
+      final Double actual = numeric ? toDouble(value) : null;
+      if ("=".equals(operator)) {
+        return actual != null ? actual == number : text.equals(value.toString());
+      }
+      if (actual == null) {
+        return false;
+      }
+      switch (operator) {
+        case "<":
+          return actual < number;
+        case "<=":
+          return actual <= number;
+        case ">":
+          return actual > number;
+        default:
+          return actual >= number;
+      }
+    }
+
+    private static Double toDouble(Object value) {
+      if (value instanceof Number) {
+        return ((Number) value).doubleValue();
+      }
+      final String s = value.toString().trim();
+      if (s.isEmpty() || !(Character.isDigit(s.charAt(s.length() - 1)))) {
+        return null;
+      }
+      try {
+        return Double.parseDouble(s);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+
+  /** Recursive descent parser, one instance per expression. */
+  private static final class Parser {
+    private final String input;
+    private int pos;
+
+    private Parser(String input) {
+      this.input = input;
+    }
+
+    private Node parse() {
+      final Node node = parseOr();
+      skipWhitespace();
+      if (pos < input.length()) {
+        throw error("Unexpected \"" + input.substring(pos) + "\"");
+      }
+      return node;
+    }
+
+    private Node parseOr() {
+      final List<Node> nodes = new ArrayList<>();
+      nodes.add(parseAnd());
+      while (accept("||") || acceptKeyword("OR")) {
+        nodes.add(parseAnd());
+      }
+      if (nodes.size() == 1) {
+        return nodes.get(0);
+      }
+      final Node[] any = nodes.toArray(new Node[0]);
+      return message -> {
+        for (Node node : any) {
+          if (node.test(message)) {
+            return true;
+          }
+        }
+        return false;
+      };
+    }
+
+    private Node parseAnd() {
+      final List<Node> nodes = new ArrayList<>();
+      nodes.add(parseUnary());
+      while (accept("&&") || acceptKeyword("AND")) {
+        nodes.add(parseUnary());
+      }
+      if (nodes.size() == 1) {
+        return nodes.get(0);
+      }
+      final Node[] all = nodes.toArray(new Node[0]);
+      return message -> {
+        for (Node node : all) {
+          if (!node.test(message)) {
+            return false;
+          }
+        }
+        return true;
+      };
+    }
+
+    private Node parseUnary() {
+      if (acceptKeyword("NOT") || (!peek("!=") && !peek("!~") && accept("!"))) {
+        final Node node = parseUnary();
+        return message -> !node.test(message);
+      }
+      if (accept("(")) {
+        final Node node = parseOr();
+        if (!accept(")")) {
+          throw error("Missing )");
+        }
+        return node;
+      }
+      return parseCondition();
+    }
+
+    private Node parseCondition() {
+      final Field field = new Field(parseWord("field name"));
+      if (accept("=~")) {
+        final Pattern pattern = compilePattern(parseValue());
+        return message -> {
+          final Object value = field.get(message);
+          return value != null && pattern.matcher(value.toString()).find();
+        };
+      }
+      if (accept("!~")) {
+        final Pattern pattern = compilePattern(parseValue());
+        return message -> {
+          final Object value = field.get(message);
+          return value != null && !pattern.matcher(value.toString()).find();
+        };
+      }
+      if (accept("!=")) {
+        final Comparison equals = new Comparison(field, "=", parseValue());
+        return message -> field.get(message) != null && !equals.test(message);
+      }
+      for (String operator : new String[] {"==", "<=", ">=", "=", "<", ">"}) {
+        if (accept(operator)) {
+          return new Comparison(field, "==".equals(operator) ? "=" : operator, parseValue());
+        }
+      }
+      return message -> field.get(message) != null;
+    }
+
+    private Pattern compilePattern(String regex) {
+      try {
+        return Pattern.compile(regex);
+      } catch (PatternSyntaxException e) {
+        throw error("Invalid regular expression " + regex + ": " + e.getDescription());
+      }
+    }
+
+    private String parseValue() {
+      skipWhitespace();
+      if (pos < input.length() && (input.charAt(pos) == '"' || input.charAt(pos) == '\'')) {
+        final char quote = input.charAt(pos++);
+        final StringBuilder value = new StringBuilder();
+        while (pos < input.length() && input.charAt(pos) != quote) {
+          char c = input.charAt(pos++);
+          if (c == '\\' && pos < input.length()) {
+            c = input.charAt(pos++);
+          }
+          value.append(c);
+        }
+        if (pos >= input.length()) {
+          throw error("Missing closing " + quote);
+        }
+        pos++;
+        return value.toString();
+      }
+      return parseWord("value");
+    }
+
+    private String parseWord(String expected) {
+      skipWhitespace();
+      final int start = pos;
+      while (pos < input.length() && isWordChar(input.charAt(pos))) {
+        pos++;
+      }
+      if (start == pos) {
+        throw error("Expected " + expected);
+      }
+      return input.substring(start, pos);
+    }
+
+    private static boolean isWordChar(char c) {
+      return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-' || c == '@';
+    }
+
+    private boolean peek(String token) {
+      skipWhitespace();
+      return input.startsWith(token, pos);
+    }
+
+    private boolean accept(String token) {
+      if (peek(token)) {
+        pos += token.length();
+        return true;
+      }
+      return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+      skipWhitespace();
+      final int end = pos + keyword.length();
+      if (end <= input.length()
+          && input.substring(pos, end).toUpperCase(Locale.ENGLISH).equals(keyword)
+          && (end == input.length() || !isWordChar(input.charAt(end)))) {
+        pos = end;
+        return true;
+      }
+      return false;
+    }
+
+    private void skipWhitespace() {
+      while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at position " + pos);
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package org.graylog2.plugins.slack;
+
+/**
+ * Escapes text inserted into Slack messages. Slack reads <code>&lt;</code>, <code>&gt;</code> and
+ * <code>&amp;</code> as control characters of links and mentions, so they must be sent as
+ * <code>&amp;lt;</code>, <code>&amp;gt;</code> and <code>&amp;amp;</code>.
+ *
+ * <p>Text is scanned once. Text without control characters, which is the common case, is returned
+ * or appended as it is, without allocating.
+ */
+public final class MrkdwnEscaper {
+  private MrkdwnEscaper() {}
+
+  /**
+   * Escape a text.
+   *
+   * @param text a text, may be null
+   * @return the escaped text, the same instance if nothing needed to be escaped
+   */
+  public static String escape(String text) {
+    if (text == null) {
+      return null;
+    }
+    final int first = indexOfControlCharacter(text);
+    if (first < 0) {
+      return text;
+    }
+    return appendFrom(new StringBuilder(text.length() + 16), text, first).toString();
+  }
+
+  /**
+   * Append an escaped text.
+   *
+   * @param builder the builder to append to
+   * @param text a text, null appends nothing
+   * @return the builder
+   */
+  public static StringBuilder append(StringBuilder builder, String text) {
+    if (text == null) {
+      return builder;
+    }
+    final int first = indexOfControlCharacter(text);
+    if (first < 0) {
+      return builder.append(text);
+    }
+    return appendFrom(builder, text, first);
+  }
+
+  private static int indexOfControlCharacter(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == '&' || c == '<' || c == '>') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static StringBuilder appendFrom(StringBuilder builder, String text, int first) {
+    int start = 0;
+    for (int i = first; i < text.length(); i++) {
+      final String escaped;
+      switch (text.charAt(i)) {
+        case '&':
+          escaped = "&amp;";
+          break;
+        case '<':
+          escaped = "&lt;";
+          break;
+        case '>':
+          escaped = "&gt;";
+          break;
+        default:
+          continue;
+      }
+      builder.append(text, start, i).append(escaped);
+      start = i + 1;
+    }
+    return builder.append(text, start, text.length());
+  }
+}
@@ -0,0 +1,166 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plugin-wide budget of alert notifications per minute, shared by all streams, so an outage firing
+ * many alerts at once does not exceed Slack's rate limit of the workspace.
+ *
+ * <p>Alerts are counted in a sliding window of one minute. Alerts beyond the budget are not sent,
+ * but counted per Slack destination and stream, and each destination gets one summary of them per
+ * <code>slack_alert_budget_summary_interval</code>. Summaries are not counted against the budget.
+ * Concurrent alerts may exceed the budget by a few, as the window is checked without locking.
+ */
+@Singleton
+public class SlackAlertBudget {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackAlertBudget.class);
+  private static final int WINDOW_BUCKETS = 60;
+  private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  private static final int MAX_LISTED_STREAMS = 10;
+
+  private final int perMinute;
+  private final long summaryIntervalMillis;
+  private final LongSupplier clock;
+  private final SlidingWindowCounter sent = new SlidingWindowCounter(WINDOW_BUCKETS, WINDOW_MILLIS);
+  /** Alerts which were not sent, by destination. */
+  private final ConcurrentMap<String, Suppressed> suppressed = new ConcurrentHashMap<>();
+  private ScheduledExecutorService executor;
+
+  @Inject
+  public SlackAlertBudget(SlackPluginConfiguration configuration) {
+    this(
+        configuration.getAlertBudget(),
+        configuration.getAlertBudgetSummaryInterval().toMilliseconds(),
+        System::currentTimeMillis);
+  }
+
+  SlackAlertBudget(int perMinute, long summaryIntervalMillis, LongSupplier clock) {
+    this.perMinute = perMinute;
+    this.summaryIntervalMillis = summaryIntervalMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * Take one alert from the budget.
+   *
+   * @return true if the alert may be sent, false if the budget of the last minute is used up
+   */
+  public boolean tryAcquire() {
+    if (perMinute <= 0) {
+      return true;
+    }
+    final long now = clock.getAsLong();
+    if (sent.sum(now) >= perMinute) {
+      return false;
+    }
+    sent.increment(now);
+    return true;
+  }
+
+  /**
+   * Count an alert which was not sent, to be summarized later.
+   *
+   * @param destination key of the Slack destination, e.g. its token and channel
+   * @param client client to send the summary with
+   * @param template a message of the alert, the summary is sent with its channel, user name and
+   *     icon
+   * @param streamTitle title of the alert's stream
+   */
+  public void suppress(
+      String destination, SlackClient client, SlackMessage template, String streamTitle) {
+    suppressed.compute(
+        destination,
+        (key, pending) -> {
+          final Suppressed result = pending == null ? new Suppressed(client, template) : pending;
+          result.streams.merge(streamTitle, 1, Integer::sum);
+          return result;
+        });
+    scheduleSummaries();
+  }
+
+  private synchronized void scheduleSummaries() {
+    if (executor == null) {
+      executor =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("slack-alert-budget")
+                  .setDaemon(true)
+                  .build());
+      executor.scheduleWithFixedDelay(
+          this::sendSummaries, summaryIntervalMillis, summaryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Send one summary to every destination with alerts that were not sent. */
+  void sendSummaries() {
+    for (String destination : new ArrayList<>(suppressed.keySet())) {
+      final Suppressed pending = suppressed.remove(destination);
+      if (pending == null) {
+        continue;
+      }
+      try {
+        pending.client.send(pending.summary(perMinute));
+      } catch (SlackClient.SlackClientException | RuntimeException e) {
+        LOG.warn("Could not send summary of suppressed alerts to Slack: {}", e.getMessage());
+      }
+    }
+  }
+
+  /** Alerts to one destination which were not sent. Only changed inside the map's compute. */
+  private static final class Suppressed {
+    private final SlackClient client;
+    private final SlackMessage template;
+    private final Map<String, Integer> streams = new LinkedHashMap<>();
+
+    private Suppressed(SlackClient client, SlackMessage template) {
+      this.client = client;
+      this.template = template;
+    }
+
+    private SlackMessage summary(int perMinute) {
+      int total = 0;
+      for (int count : streams.values()) {
+        total += count;
+      }
+      final List<String> listed = new ArrayList<>();
+      for (Map.Entry<String, Integer> stream : streams.entrySet()) {
+        if (listed.size() == MAX_LISTED_STREAMS) {
+          listed.add((streams.size() - MAX_LISTED_STREAMS) + " more");
+          break;
+        }
+        listed.add(MrkdwnEscaper.escape(stream.getKey()) + " (" + stream.getValue() + ')');
+      }
+      final String text =
+          "_"
+              + total
+              + (total == 1 ? " more alert" : " more alerts")
+              + " from streams "
+              + String.join(", ", listed)
+              + " were not sent, because more than "
+              + perMinute
+              + " alerts per minute were sent_";
+      return new SlackMessage(
+          text,
+          template.channel,
+          template.username,
+          template.iconUrl,
+          template.iconEmoji,
+          template.linkNames,
+          new ArrayList<>());
+    }
+  }
+}
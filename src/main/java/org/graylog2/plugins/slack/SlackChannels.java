@@ -0,0 +1,157 @@
+package org.graylog2.plugins.slack;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.graylog2.plugins.slack.transport.SlackWebApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plugin-wide cache of channel IDs, so messages are posted to a channel's stable ID instead of its
+ * name, which Slack would otherwise resolve on every post and which breaks when the channel is
+ * renamed.
+ *
+ * <p>All channels of a workspace are listed at once with <code>conversations.list</code>, page by
+ * page, and refreshed after <code>slack_channel_cache_ttl</code>. Channels are resolved without
+ * blocking the caller: listings run in the background, and until the first one is done, channels
+ * are posted by name. While a workspace is listed again, the previous IDs are used. If a workspace
+ * can't be listed, e.g. because the token lacks the <code>channels:read</code> scope, the previous
+ * IDs, or names, are used until the next refresh.
+ */
+@Singleton
+public class SlackChannels {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackChannels.class);
+  private static final int MAX_WORKSPACES = 1000;
+  private static final int MAX_PAGES = 100;
+  private static final String PAGE_SIZE = "1000";
+
+  private final ConcurrentMap<String, Workspace> workspaces;
+  private final long ttlMillis;
+  private ExecutorService executor;
+
+  @Inject
+  public SlackChannels(SlackPluginConfiguration configuration) {
+    this(configuration.getChannelCacheTtl().toMilliseconds());
+  }
+
+  SlackChannels(long ttlMillis) {
+    this.workspaces =
+        CacheBuilder.newBuilder().maximumSize(MAX_WORKSPACES).<String, Workspace>build().asMap();
+    this.ttlMillis = ttlMillis;
+  }
+
+  /**
+   * Resolve a channel name to its ID.
+   *
+   * @param api the workspace
+   * @param channel a channel, e.g. <code>#alerts</code>
+   * @return the ID of the channel, or the channel as given if it is not a <code>#name</code> or
+   *     was not found yet
+   */
+  public String resolve(SlackWebApi api, String channel) {
+    if (channel == null || !channel.startsWith("#")) {
+      return channel;
+    }
+    final Workspace workspace = workspaces.computeIfAbsent(api.getKey(), key -> new Workspace());
+    if (System.currentTimeMillis() - workspace.listedAt >= ttlMillis) {
+      refresh(api, workspace);
+    }
+    final String id = workspace.ids.get(channel.substring(1));
+    return id == null ? channel : id;
+  }
+
+  /**
+   * List the channels of a workspace again, e.g. after a channel was renamed. Until the listing is
+   * done, the previous IDs are used.
+   */
+  public void invalidate(SlackWebApi api) {
+    final Workspace workspace = workspaces.get(api.getKey());
+    if (workspace != null) {
+      workspace.listedAt = 0;
+      refresh(api, workspace);
+    }
+  }
+
+  private void refresh(SlackWebApi api, Workspace workspace) {
+    if (workspace.refreshing.compareAndSet(false, true)) {
+      getExecutor()
+          .execute(
+              () -> {
+                try {
+                  final Map<String, String> ids = list(api);
+                  if (ids != null) {
+                    workspace.ids = ids;
+                  }
+                  workspace.listedAt = System.currentTimeMillis();
+                } finally {
+                  workspace.refreshing.set(false);
+                }
+              });
+    }
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor =
+          Executors.newSingleThreadExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("slack-channel-lookup")
+                  .setDaemon(true)
+                  .build());
+    }
+    return executor;
+  }
+
+  /** @return channel IDs by name, or null if the channels could not be listed */
+  private static Map<String, String> list(SlackWebApi api) {
+    final Map<String, String> ids = new HashMap<>();
+    String cursor = "";
+    try {
+      for (int page = 0; page < MAX_PAGES; page++) {
+        final JsonNode response =
+            api.call(
+                "conversations.list",
+                ImmutableMap.of(
+                    "types", "public_channel,private_channel",
+                    "exclude_archived", "true",
+                    "limit", PAGE_SIZE,
+                    "cursor", cursor));
+        for (JsonNode channel : response.path("channels")) {
+          ids.put(channel.path("name").asText(), channel.path("id").asText());
+        }
+        cursor = response.path("response_metadata").path("next_cursor").asText("");
+        if (cursor.isEmpty()) {
+          break;
+        }
+      }
+    } catch (SlackClient.SlackClientException e) {
+      LOG.warn("Could not list Slack channels, posting to channel names: {}", e.getMessage());
+      return null;
+    }
+    return ids;
+  }
+
+  /** Wait until the listings started so far are done. */
+  void awaitRefreshes() throws InterruptedException, ExecutionException {
+    getExecutor().submit(() -> {}).get();
+  }
+
+  private static final class Workspace {
+    private volatile Map<String, String> ids = Collections.emptyMap();
+    /** When the channels were listed, 0 if they need to be listed. */
+    private volatile long listedAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+  }
+}
@@ -1,145 +1,90 @@
 package org.graylog2.plugins.slack;
 
-import static com.google.common.base.Strings.isNullOrEmpty;
-
-import com.google.common.base.Charsets;
-import com.google.common.io.ByteStreams;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.net.HttpURLConnection;
-import java.net.InetSocketAddress;
-import java.net.MalformedURLException;
-import java.net.Proxy;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
-import org.apache.commons.lang3.StringUtils;
 import org.graylog2.plugin.configuration.Configuration;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+/** Sends messages to Slack through a {@link SlackTransport}. */
 public class SlackClient {
+  public static final String DEFAULT_API_URL = "https://slack.com/api/";
 
-  private static final Logger LOG = LoggerFactory.getLogger(SlackClient.class);
-
-  private final String webhookUrl;
-  private final String proxyURL;
-  private final String slackToken;
+  private final SlackTransport transport;
 
   public SlackClient(Configuration configuration) {
-    this.webhookUrl = configuration.getString(SlackPluginBase.CK_WEBHOOK_URL);
-    this.proxyURL = configuration.getString(SlackPluginBase.CK_PROXY_ADDRESS);
-    this.slackToken = configuration.getString(SlackPluginBase.CK_TOKEN);
+    this(configuration, DEFAULT_API_URL);
   }
 
-  public void send(SlackMessage message) throws SlackClientException {
-    final HttpURLConnection conn;
-
-    // If `token` is provided, we will use Slack API methods; otherwise Slack's webhook will be used
-    if (isNullOrEmpty(slackToken)) {
-      // POST to Slack webhook
-      final URL url;
-      try {
-        url = new URL(webhookUrl);
-      } catch (MalformedURLException e) {
-        throw new SlackClientException("Error while constructing webhook URL.", e);
-      }
-      try {
-        if (!StringUtils.isEmpty(proxyURL)) {
-          final URI proxyUri = new URI(proxyURL);
-          InetSocketAddress sockAddress =
-              new InetSocketAddress(proxyUri.getHost(), proxyUri.getPort());
-          final Proxy proxy = new Proxy(Proxy.Type.HTTP, sockAddress);
-          conn = (HttpURLConnection) url.openConnection(proxy);
-        } else {
-          conn = (HttpURLConnection) url.openConnection();
-        }
-        conn.setDoOutput(true);
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-      } catch (URISyntaxException | IOException e) {
-        throw new SlackClientException("Could not open connection to Slack API", e);
-      }
-      try (final Writer writer = new OutputStreamWriter(conn.getOutputStream())) {
-        String payload = message.getJsonString();
-        if (LOG.isTraceEnabled()) LOG.trace("{}", payload);
-        writer.write(payload);
-        writer.flush();
-
-        final int responseCode = conn.getResponseCode();
-        if (responseCode != 200) {
-          if (LOG.isDebugEnabled()) {
-            try (final InputStream responseStream = conn.getInputStream()) {
-              final byte[] responseBytes = ByteStreams.toByteArray(responseStream);
-              final String response = new String(responseBytes, Charsets.UTF_8);
-              LOG.debug("Received HTTP response body:\n{}", response);
-            }
-          }
-          throw new SlackClientException("Unexpected HTTP response status " + responseCode);
-        }
-      } catch (IOException e) {
-        throw new SlackClientException("Could not POST to Slack API", e);
-      }
-    } else {
-      // GET to Slack API
-      final URL url;
-      try {
-        StringBuilder urlBuilder = new StringBuilder();
-        urlBuilder
-            .append("https://slack.com/api/chat.postMessage?token=")
-            .append(slackToken)
-            .append('&')
-            .append(message.getRequestString());
-        if (LOG.isTraceEnabled()) LOG.trace("{}", urlBuilder);
-        url = new URL(urlBuilder.toString());
-      } catch (MalformedURLException e) {
-        throw new SlackClientException("Error while constructing webhook URL.", e);
-      }
-      try {
-        if (!StringUtils.isEmpty(proxyURL)) {
-          final URI proxyUri = new URI(proxyURL);
-          InetSocketAddress sockAddress =
-              new InetSocketAddress(proxyUri.getHost(), proxyUri.getPort());
-          final Proxy proxy = new Proxy(Proxy.Type.HTTP, sockAddress);
-          conn = (HttpURLConnection) url.openConnection(proxy);
-        } else {
-          conn = (HttpURLConnection) url.openConnection();
-        }
-        conn.setRequestMethod("GET");
-        conn.setRequestProperty("Content-Type", "application/json;charset=utf-8");
-      } catch (URISyntaxException | IOException e) {
-        throw new SlackClientException("Could not open connection to Slack API", e);
-      }
-    }
-    // Parse response from Slack
+  /**
+   * @param configuration a plugin configuration
+   * @param apiUrl base URL of Slack Web API methods, ending with <code>/</code>
+   */
+  public SlackClient(Configuration configuration, String apiUrl) {
+    this(SlackTransports.http(configuration, apiUrl));
+  }
+
+  public SlackClient(SlackTransport transport) {
+    this.transport = transport;
+  }
+
+  public SlackResponse send(SlackMessage message) throws SlackClientException {
+    return send(message, SlackMetrics.NONE, new StageTimer());
+  }
+
+  /**
+   * Send a message to Slack and record payload size, latency and response status.
+   *
+   * @param message a message to be sent
+   * @param metrics metrics of the sending output or alarm callback
+   * @param stageTimer timings of this notification, the encode and send stages are added
+   * @return Slack's response, with the message timestamp if sent with the Web API
+   * @throws SlackClientException if the message was not accepted by Slack
+   */
+  public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer)
+      throws SlackClientException {
+    metrics.startSend();
     try {
-      final int responseCode = conn.getResponseCode();
-      if (responseCode != 200) {
-        if (LOG.isDebugEnabled()) {
-          try (final InputStream responseStream = conn.getInputStream()) {
-            final byte[] responseBytes = ByteStreams.toByteArray(responseStream);
-            final String response = new String(responseBytes, Charsets.UTF_8);
-            LOG.debug("Received HTTP response body:\n{}", response);
-          }
-        }
-        throw new SlackClientException("Unexpected HTTP response status " + responseCode);
-      }
-    } catch (IOException e) {
-      throw new SlackClientException("Could not POST to Slack API", e);
+      return transport.send(message, metrics, stageTimer);
+    } finally {
+      metrics.finishSend();
     }
   }
 
-  public class SlackClientException extends Exception {
+  /** Prepare the transport for the next send. See {@link SlackTransport#warmUp()}. */
+  public void warmUp() {
+    transport.warmUp();
+  }
+
+  /** Clients with equal keys share what {@link #warmUp()} prepares, null if nothing is. */
+  public String getWarmUpKey() {
+    return transport.getWarmUpKey();
+  }
+
+  public SlackTransport getTransport() {
+    return transport;
+  }
+
+  public static class SlackClientException extends Exception {
     private static final long serialVersionUID = 4148723128396736l;
 
+    private final transient SlackResponse response;
+
     public SlackClientException(String msg) {
       super(msg);
+      this.response = null;
     }
 
     public SlackClientException(String msg, Throwable cause) {
       super(msg, cause);
+      this.response = null;
+    }
+
+    /** Slack answered, but did not accept the message. */
+    public SlackClientException(SlackResponse response) {
+      super("Slack did not accept the message: " + response);
+      this.response = response;
+    }
+
+    /** Slack's classified answer, or null if the request failed before Slack answered. */
+    public SlackResponse getResponse() {
+      return response;
     }
   }
 }
@@ -0,0 +1,112 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps connections to Slack warm for outputs and alarm callbacks with warm-up enabled, so the
+ * first message after a start or configuration change is as fast as any other.
+ *
+ * <p>Connections are opened by {@link SlackClient#warmUp()} on a single background thread, once per
+ * Slack host and proxy, and refreshed before the keep-alive cache drops them as idle. A host is no
+ * longer refreshed when nothing was sent to it for {@link
+ * SlackPluginConfiguration#getWarmUpKeepWarm()}.
+ */
+@Singleton
+public class SlackConnectionWarmer {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackConnectionWarmer.class);
+
+  private final long refreshIntervalMillis;
+  private final long keepWarmMillis;
+  private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<>();
+  private volatile ScheduledExecutorService executor;
+
+  @Inject
+  public SlackConnectionWarmer(SlackPluginConfiguration configuration) {
+    this.refreshIntervalMillis = configuration.getWarmUpRefreshInterval().toMilliseconds();
+    this.keepWarmMillis = configuration.getWarmUpKeepWarm().toMilliseconds();
+  }
+
+  /**
+   * Warm up the connection of a client in the background, and keep it warm. Cheap enough to be
+   * called for every message sent.
+   *
+   * @param client a Slack client
+   */
+  public void keepWarm(SlackClient client) {
+    final String key = client.getWarmUpKey();
+    if (key == null) {
+      return;
+    }
+    final Target existing = targets.get(key);
+    if (existing != null) {
+      existing.lastUsed = System.currentTimeMillis();
+      return;
+    }
+    final Target target = new Target(client);
+    if (targets.putIfAbsent(key, target) == null) {
+      getExecutor().execute(() -> warmUp(key, client));
+    }
+  }
+
+  private ScheduledExecutorService getExecutor() {
+    if (executor == null) {
+      synchronized (this) {
+        if (executor == null) {
+          final ScheduledExecutorService scheduler =
+              Executors.newSingleThreadScheduledExecutor(
+                  new ThreadFactoryBuilder()
+                      .setNameFormat("slack-connection-warmer")
+                      .setDaemon(true)
+                      .build());
+          scheduler.scheduleWithFixedDelay(
+              this::refresh, refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+          executor = scheduler;
+        }
+      }
+    }
+    return executor;
+  }
+
+  private void refresh() {
+    final long idleSince = System.currentTimeMillis() - keepWarmMillis;
+    final Iterator<Map.Entry<String, Target>> it = targets.entrySet().iterator();
+    while (it.hasNext()) {
+      final Map.Entry<String, Target> entry = it.next();
+      if (entry.getValue().lastUsed < idleSince) {
+        LOG.debug("Stop keeping connection to {} warm", entry.getKey());
+        it.remove();
+      } else {
+        warmUp(entry.getKey(), entry.getValue().client);
+      }
+    }
+  }
+
+  /** Failures are only logged, an exception would cancel the scheduled refresh for good. */
+  private static void warmUp(String key, SlackClient client) {
+    try {
+      client.warmUp();
+    } catch (RuntimeException e) {
+      LOG.warn("Could not warm up connection to {}", key, e);
+    }
+  }
+
+  private static class Target {
+    private final SlackClient client;
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    Target(SlackClient client) {
+      this.client = client;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package org.graylog2.plugins.slack;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.graylog2.plugin.configuration.Configuration;
+
+/**
+ * An additional webhook or workspace an output delivers to, parsed from the <code>destinations
+ * </code> setting. Destinations are separated by commas or new lines, and each is a webhook URL or
+ * a Slack token, optionally followed by a channel, e.g. <code>xoxb-1234 #alerts</code>.
+ */
+public final class SlackDestination {
+  private final String webhookUrl;
+  private final String token;
+  private final String channel;
+
+  private SlackDestination(String webhookUrl, String token, String channel) {
+    this.webhookUrl = webhookUrl;
+    this.token = token;
+    this.channel = channel;
+  }
+
+  /**
+   * Parse a list of destinations.
+   *
+   * @param spec destinations separated by commas or new lines, may be null
+   * @return one destination per non-empty entry, in order
+   * @throws IllegalArgumentException if an entry is neither a HTTP(S) URL nor a token
+   */
+  public static List<SlackDestination> parse(String spec) {
+    final List<SlackDestination> destinations = new ArrayList<>();
+    if (spec == null) {
+      return destinations;
+    }
+    for (String entry : spec.split("[,\\n]")) {
+      final String[] parts = entry.trim().split("\\s+");
+      if (parts[0].isEmpty()) {
+        continue;
+      }
+      if (parts.length > 2) {
+        throw new IllegalArgumentException("Unexpected \"" + parts[2] + "\" in " + entry.trim());
+      }
+      final String channel = parts.length > 1 ? parts[1] : null;
+      if (parts[0].startsWith("xox")) {
+        destinations.add(new SlackDestination(null, parts[0], channel));
+      } else {
+        checkWebhookUrl(parts[0]);
+        destinations.add(new SlackDestination(parts[0], null, channel));
+      }
+    }
+    return destinations;
+  }
+
+  private static void checkWebhookUrl(String url) {
+    try {
+      if (!SlackPluginBase.isValidUriScheme(new URI(url), "http", "https")) {
+        throw new IllegalArgumentException(url + " is neither a HTTP(S) URL nor a Slack token");
+      }
+    } catch (URISyntaxException e) {
+      throw new IllegalArgumentException(url + " is neither a HTTP(S) URL nor a Slack token");
+    }
+  }
+
+  /** Channel to post to, or null to use the channel of the output. */
+  public String getChannel() {
+    return channel;
+  }
+
+  /**
+   * Configuration of this destination, for {@link SlackTransport.Factory#create(Configuration)}.
+   *
+   * @param configuration configuration of the output
+   * @return the output's configuration with the webhook, token and channel of this destination
+   */
+  public Configuration configure(Configuration configuration) {
+    final Map<String, Object> source = new HashMap<>(configuration.getSource());
+    if (token != null) {
+      source.put(SlackPluginBase.CK_TOKEN, token);
+    } else {
+      source.put(SlackPluginBase.CK_WEBHOOK_URL, webhookUrl);
+      source.remove(SlackPluginBase.CK_TOKEN);
+    }
+    if (channel != null) {
+      source.put(SlackPluginBase.CK_CHANNEL, channel);
+    }
+    return new Configuration(source);
+  }
+}
@@ -0,0 +1,332 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Singleton;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plugin-wide index of incidents, so repeats of the same problem update one Slack message instead
+ * of posting new ones.
+ *
+ * <p>An incident is identified by a key built by the output or alarm callback, e.g. from the
+ * stream, the channel and some message fields. The first occurrence is posted, and Slack's message
+ * timestamp is remembered. Repeats update that message with <code>chat.update</code>, adding how
+ * often and when the problem was last seen. Updates of one incident are at most sent once per
+ * update interval; repeats in between are counted, and shown by a trailing update at the end of the
+ * interval, so the message is current even if the problem stops repeating.
+ *
+ * <p>Only the Web API answers with a message timestamp, so messages sent to webhooks are always
+ * posted. Incidents are forgotten after they were not seen for the configured TTL, or when the
+ * index is full. They are kept across restarts by {@link SlackStateStore}.
+ */
+@Singleton
+public class SlackIncidents {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackIncidents.class);
+
+  private final ConcurrentMap<String, Incident> incidents;
+  private final long ttlMillis;
+  private final long updateIntervalMillis;
+  private ScheduledExecutorService executor;
+
+  @Inject
+  public SlackIncidents(SlackPluginConfiguration configuration) {
+    this(
+        configuration.getIncidentMaxEntries(),
+        configuration.getIncidentTtl().toMilliseconds(),
+        configuration.getIncidentUpdateInterval().toMilliseconds());
+  }
+
+  SlackIncidents(int maxEntries, long ttlMillis, long updateIntervalMillis) {
+    final Cache<String, Incident> cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterAccess(ttlMillis, TimeUnit.MILLISECONDS)
+            .build();
+    this.incidents = cache.asMap();
+    this.ttlMillis = ttlMillis;
+    this.updateIntervalMillis = updateIntervalMillis;
+  }
+
+  /**
+   * Post a message, or update the message of an earlier incident with the same key.
+   *
+   * @param key incident key
+   * @param client client to send with
+   * @param message a message to be sent
+   * @param metrics metrics of the sending output or alarm callback
+   * @param stageTimer timings of this notification
+   * @throws SlackClient.SlackClientException if the message was not accepted by Slack
+   */
+  public void send(
+      String key,
+      SlackClient client,
+      SlackMessage message,
+      SlackMetrics metrics,
+      StageTimer stageTimer)
+      throws SlackClient.SlackClientException {
+    final long now = System.currentTimeMillis();
+    final Incident created = new Incident(now);
+    Incident incident = incidents.putIfAbsent(key, created);
+    // The cache only expires entries after their last access, e.g. restored ones after loading
+    if (incident != null
+        && incident.isExpired(now, ttlMillis)
+        && incidents.replace(key, incident, created)) {
+      incident = null;
+    }
+    if (incident == null) {
+      post(key, created, client, message, metrics, stageTimer);
+      return;
+    }
+
+    metrics.markGrouped();
+    final SlackMessage update = incident.repeat(message, now, updateIntervalMillis);
+    if (update == null) {
+      scheduleUpdate(key, incident, client, metrics);
+      return;
+    }
+    try {
+      client.send(update, metrics, stageTimer);
+    } catch (SlackClient.SlackClientException e) {
+      // e.g. the message was deleted, the next repeat starts a new incident
+      incidents.remove(key, incident);
+      throw e;
+    }
+  }
+
+  private void post(
+      String key,
+      Incident incident,
+      SlackClient client,
+      SlackMessage message,
+      SlackMetrics metrics,
+      StageTimer stageTimer)
+      throws SlackClient.SlackClientException {
+    final SlackResponse response;
+    try {
+      response = client.send(message, metrics, stageTimer);
+    } catch (SlackClient.SlackClientException e) {
+      incidents.remove(key, incident);
+      throw e;
+    }
+    if (response.getTs() == null) {
+      // Webhook messages can't be updated
+      incidents.remove(key, incident);
+    } else {
+      incident.posted(response.getChannel(), response.getTs());
+      // Repeats may have arrived while the message was posted
+      scheduleUpdate(key, incident, client, metrics);
+    }
+  }
+
+  /** Send repeats counted since the last update once the update interval is over. */
+  private void scheduleUpdate(
+      String key, Incident incident, SlackClient client, SlackMetrics metrics) {
+    final long delay = incident.scheduleUpdate(System.currentTimeMillis(), updateIntervalMillis);
+    if (delay < 0) {
+      return;
+    }
+    getExecutor()
+        .schedule(
+            () -> {
+              final SlackMessage update = incident.pendingUpdate(System.currentTimeMillis());
+              if (update == null) {
+                return;
+              }
+              try {
+                client.send(update, metrics, new StageTimer());
+              } catch (SlackClient.SlackClientException e) {
+                incidents.remove(key, incident);
+                LOG.warn("Could not update Slack message of incident: {}", e.getMessage());
+              }
+            },
+            delay,
+            TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized ScheduledExecutorService getExecutor() {
+    if (executor == null) {
+      executor =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder()
+                  .setNameFormat("slack-incident-update")
+                  .setDaemon(true)
+                  .build());
+    }
+    return executor;
+  }
+
+  /** Number of incidents currently remembered. */
+  public int size() {
+    return incidents.size();
+  }
+
+  /** Write the posted incidents, see {@link SlackStateStore}. */
+  void writeTo(DataOutputStream out) throws IOException {
+    final List<Map.Entry<String, Incident>> posted = new ArrayList<>(incidents.size());
+    for (Map.Entry<String, Incident> entry : incidents.entrySet()) {
+      if (entry.getValue().isPosted()) {
+        posted.add(entry);
+      }
+    }
+    out.writeInt(posted.size());
+    for (Map.Entry<String, Incident> entry : posted) {
+      SlackStateStore.writeString(out, entry.getKey());
+      entry.getValue().writeTo(out);
+    }
+  }
+
+  /** Read incidents written by {@link #writeTo}, skipping those not seen for the TTL. */
+  void readFrom(ByteBuffer in, long nowMillis) {
+    final int count = in.getInt();
+    for (int i = 0; i < count; i++) {
+      final String key = SlackStateStore.readString(in);
+      final Incident incident = Incident.readFrom(in);
+      if (nowMillis - incident.lastSeen < ttlMillis) {
+        incidents.putIfAbsent(key, incident);
+      }
+    }
+  }
+
+  private static final class Incident {
+    private final long firstSeen;
+    private String channel;
+    private String ts;
+    private int count = 1;
+    private long lastSeen;
+    private long lastUpdate;
+    /** Latest repeat not shown yet, and whether a trailing update is scheduled for it. */
+    private SlackMessage pending;
+    private boolean updateScheduled;
+
+    private Incident(long firstSeen) {
+      this.firstSeen = firstSeen;
+      this.lastSeen = firstSeen;
+      this.lastUpdate = firstSeen;
+    }
+
+    private static Incident readFrom(ByteBuffer in) {
+      final Incident incident = new Incident(in.getLong());
+      incident.lastSeen = in.getLong();
+      incident.lastUpdate = in.getLong();
+      incident.count = in.getInt();
+      incident.channel = SlackStateStore.readString(in);
+      incident.ts = SlackStateStore.readString(in);
+      return incident;
+    }
+
+    private synchronized void writeTo(DataOutputStream out) throws IOException {
+      out.writeLong(firstSeen);
+      out.writeLong(lastSeen);
+      out.writeLong(lastUpdate);
+      out.writeInt(count);
+      SlackStateStore.writeString(out, channel);
+      SlackStateStore.writeString(out, ts);
+    }
+
+    private synchronized boolean isExpired(long nowMillis, long ttlMillis) {
+      return nowMillis - lastSeen >= ttlMillis;
+    }
+
+    private synchronized boolean isPosted() {
+      return ts != null;
+    }
+
+    private synchronized void posted(String channel, String ts) {
+      this.channel = channel;
+      this.ts = ts;
+    }
+
+    /**
+     * Count a repeat.
+     *
+     * @return the update to send, or null if the message was not posted yet or was updated less
+     *     than the interval ago
+     */
+    private synchronized SlackMessage repeat(
+        SlackMessage message, long nowMillis, long updateIntervalMillis) {
+      count++;
+      lastSeen = nowMillis;
+      if (ts == null || lastSeen - lastUpdate < updateIntervalMillis) {
+        pending = message;
+        return null;
+      }
+      pending = null;
+      return update(message, nowMillis);
+    }
+
+    /**
+     * Mark a trailing update as scheduled.
+     *
+     * @return milliseconds until the update is due, or -1 if there is nothing to send or the update
+     *     is already scheduled
+     */
+    private synchronized long scheduleUpdate(long nowMillis, long updateIntervalMillis) {
+      if (pending == null || ts == null || updateScheduled) {
+        return -1;
+      }
+      updateScheduled = true;
+      return Math.max(0, lastUpdate + updateIntervalMillis - nowMillis);
+    }
+
+    /** @return the trailing update, or null if a repeat was sent since it was scheduled */
+    private synchronized SlackMessage pendingUpdate(long nowMillis) {
+      updateScheduled = false;
+      if (pending == null) {
+        return null;
+      }
+      final SlackMessage message = pending;
+      pending = null;
+      return update(message, nowMillis);
+    }
+
+    private SlackMessage update(SlackMessage message, long nowMillis) {
+      lastUpdate = nowMillis;
+      final SlackMessage update =
+          new SlackMessage(
+              message.text == null ? describe() : message.text + '\n' + describe(),
+              channel,
+              message.username,
+              message.iconUrl,
+              message.iconEmoji,
+              message.linkNames,
+              message.attachments);
+      update.ts = ts;
+      return update;
+    }
+
+    private String describe() {
+      return "_Seen "
+          + count
+          + " times since "
+          + formatDate(firstSeen)
+          + ", last at "
+          + formatDate(lastSeen)
+          + "_";
+    }
+
+    /** Shown in the reader's time zone by Slack, with a UTC fallback. */
+    private static String formatDate(long millis) {
+      return "<!date^"
+          + TimeUnit.MILLISECONDS.toSeconds(millis)
+          + "^{date_short_pretty} {time_secs}|"
+          + new DateTime(millis, DateTimeZone.UTC).toString("yyyy-MM-dd HH:mm:ss 'UTC'")
+          + ">";
+    }
+  }
+}
@@ -3,6 +3,7 @@ package org.graylog2.plugins.slack;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -47,6 +48,17 @@ public class SlackMessage {
   @JsonProperty(value = "attachments")
   public List<Attachment> attachments;
 
+  /**
+   * Timestamp of an earlier message, which is then updated with <code>chat.update</code> instead of
+   * posting a new one. Web API only, the channel must be the channel ID.
+   */
+  @JsonIgnore public String ts;
+
+  /** Timestamp of the parent message, which this message is then posted as a reply to. */
+  @JsonIgnore public String threadTs;
+
+  @JsonIgnore private SharedEncoding sharedEncoding;
+
   public SlackMessage(
       String text, String channel, String username, String messageIcon, boolean linkNames) {
     this(text, channel, username, null, null, linkNames, Lists.newArrayList());
@@ -85,63 +97,102 @@ public class SlackMessage {
     }
   }
 
+  /**
+   * Copy this message for another channel. The copies share the attachments and the encoding of
+   * everything but the channel, so a message sent to several destinations is serialized once. The
+   * message must not be modified after it was copied.
+   *
+   * @param channel channel of the copy
+   * @return a copy sent to the given channel
+   */
+  public SlackMessage withChannel(String channel) {
+    if (sharedEncoding == null) {
+      sharedEncoding = new SharedEncoding();
+    }
+    final SlackMessage copy =
+        new SlackMessage(text, channel, username, iconUrl, iconEmoji, linkNames, attachments);
+    copy.ts = ts;
+    copy.threadTs = threadTs;
+    copy.sharedEncoding = sharedEncoding;
+    return copy;
+  }
+
   public String getJsonString() throws JsonProcessingException {
-    final Map<String, Object> params =
-        new HashMap<String, Object>() {
-          {
-            put("channel", channel);
-            put("text", text);
-            put("icon_url", iconUrl);
-            put("icon_emoji", iconEmoji);
-            put("link_names", linkNames);
-            put("parse", "none");
-          }
-        };
+    if (sharedEncoding == null) {
+      return toJson(getParams(true, false));
+    }
+    String body = sharedEncoding.json;
+    if (body == null) {
+      body = toJson(getParams(false, false));
+      sharedEncoding.json = body;
+    }
+    // body is never empty, it always has a text
+    return "{\"channel\":" + toJson(channel) + ',' + body.substring(1);
+  }
+
+  public String getRequestString() {
+    if (sharedEncoding == null) {
+      return toRequestString(getParams(true, true));
+    }
+    String body = sharedEncoding.request;
+    if (body == null) {
+      body = toRequestString(getParams(false, true));
+      sharedEncoding.request = body;
+    }
+    if (channel == null) {
+      return body;
+    }
+    return "channel=" + urlEncode(channel) + (body.isEmpty() ? "" : '&' + body);
+  }
+
+  private Map<String, Object> getParams(boolean withChannel, boolean attachmentsAsString) {
+    final Map<String, Object> params = new HashMap<>();
+    if (withChannel) {
+      params.put("channel", channel);
+    }
+    params.put("text", text);
+    params.put("icon_url", iconUrl);
+    params.put("icon_emoji", iconEmoji);
+    params.put("link_names", linkNames);
+    params.put("parse", "none");
+    if (ts != null) {
+      params.put("ts", ts);
+    }
+    if (threadTs != null) {
+      params.put("thread_ts", threadTs);
+    }
     if (!attachments.isEmpty()) {
-      params.put("attachments", attachments);
+      params.put("attachments", attachmentsAsString ? toJson(attachments) : attachments);
     }
+    return params;
+  }
+
+  private static String toJson(Object value) {
     try {
-      return objectWriter.writeValueAsString(params);
+      return objectWriter.writeValueAsString(value);
     } catch (JsonProcessingException e) {
       throw new RuntimeException("Could not build payload JSON.", e);
     }
   }
 
-  public String getRequestString() {
-    final Map<String, Object> params =
-        new HashMap<String, Object>() {
-          {
-            put("channel", channel);
-            put("text", text);
-            put("icon_url", iconUrl);
-            put("icon_emoji", iconEmoji);
-            put("link_names", linkNames);
-            put("parse", "none");
-          }
-        };
-    if (!attachments.isEmpty()) {
-      try {
-        String attachmentString = objectWriter.writeValueAsString(attachments);
-        params.put("attachments", attachmentString);
-      } catch (JsonProcessingException e) {
-        throw new RuntimeException("Could not build payload JSON.", e);
+  private static String toRequestString(Map<String, Object> params) {
+    StringBuilder sb = new StringBuilder();
+    for (HashMap.Entry<String, Object> entry : params.entrySet()) {
+      Object value = entry.getValue();
+      if (value != null) {
+        if (sb.length() > 0) sb.append('&');
+        sb.append(urlEncode(entry.getKey())).append('=').append(urlEncode(value.toString()));
       }
     }
-    StringBuilder sb = new StringBuilder();
+    return sb.toString();
+  }
+
+  private static String urlEncode(String value) {
     try {
-      for (HashMap.Entry<String, Object> entry : params.entrySet()) {
-        Object value = entry.getValue();
-        if (value != null) {
-          if (sb.length() > 0) sb.append('&');
-          sb.append(URLEncoder.encode(entry.getKey(), "UTF-8"))
-              .append('=')
-              .append(URLEncoder.encode(value.toString(), "UTF-8"));
-        }
-      }
+      return URLEncoder.encode(value, "UTF-8");
     } catch (UnsupportedEncodingException e) {
       throw new RuntimeException("Unable to encode URL", e);
     }
-    return sb.toString();
   }
 
   public Attachment addAttachment(Attachment attachment) {
@@ -334,4 +385,10 @@ public class SlackMessage {
       this.style = style;
     }
   }
+
+  /** Encodings without the channel, shared by copies made with {@link #withChannel(String)}. */
+  private static final class SharedEncoding {
+    private volatile String json;
+    private volatile String request;
+  }
 }
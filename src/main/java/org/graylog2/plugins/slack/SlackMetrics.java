@@ -0,0 +1,295 @@
+package org.graylog2.plugins.slack;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Delivery metrics of one output or alarm callback, registered in Graylog's {@link
+ * MetricRegistry} under <code>&lt;class&gt;.&lt;stream id&gt;.&lt;instance&gt;.*</code>.
+ *
+ * <p>The registry returns existing metrics for a known name, so alarm callbacks, which Graylog
+ * creates for every alert, keep adding to the same metrics as long as their configuration does
+ * not change, see {@link SlackStatistics}. Besides the registered
+ * metrics, the current delivery state (in-flight sends, rate-limit wait, last error) is kept in
+ * atomics, so it can be read at any time without contending with senders.
+ */
+public class SlackMetrics {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackMetrics.class);
+
+  /** Metrics which are not registered anywhere. */
+  public static final SlackMetrics NONE = new SlackMetrics(new MetricRegistry(), null, "none");
+
+  /** Messages waiting in the delivery queue of an output. */
+  public static final String QUEUE_DEPTH = "queue.depth";
+  /** Current messages per post of a batching output. */
+  public static final String BATCH_SIZE = "aimd.batchSize";
+  /** Current concurrent posts of a batching output. */
+  public static final String CONCURRENCY = "aimd.concurrency";
+
+  private final MetricRegistry registry;
+  private final String owner;
+  private final String id;
+  private final String instance;
+  private final String prefix;
+  private final Meter rendered;
+  private final Meter filtered;
+  private final Meter grouped;
+  private final Meter suppressed;
+  private final Meter stale;
+  private final Meter retries;
+  private final Histogram payloadBytes;
+  private final Timer httpLatency;
+  private final Meter rateLimited;
+  private final Meter dropped;
+  private final Map<StageTimer.Stage, Timer> stages = new EnumMap<>(StageTimer.Stage.class);
+  private final ConcurrentMap<Integer, Counter> responses = new ConcurrentHashMap<>();
+  private final Map<SlackResponse.Status, Counter> results =
+      new EnumMap<>(SlackResponse.Status.class);
+  private final ConcurrentMap<String, Gauge<Integer>> gauges = new ConcurrentHashMap<>();
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong rateLimitedUntil = new AtomicLong();
+  private final AtomicReference<String> lastError = new AtomicReference<>();
+  private final AtomicLong lastErrorAt = new AtomicLong();
+
+  public SlackMetrics(MetricRegistry registry, Class<?> owner, String id) {
+    this(registry, owner, id, null);
+  }
+
+  /**
+   * @param registry registry to register the metrics in
+   * @param owner class of the output or alarm callback, or null
+   * @param id stream ID
+   * @param instance name of the output or alarm callback among those of the stream, or null
+   */
+  public SlackMetrics(MetricRegistry registry, Class<?> owner, String id, String instance) {
+    this.registry = registry;
+    this.owner = owner == null ? null : owner.getSimpleName();
+    this.id = id;
+    this.instance = instance;
+    this.prefix = owner == null ? name(id, instance) : name(owner, id, instance);
+    this.rendered = registry.meter(name(prefix, "rendered"));
+    this.filtered = registry.meter(name(prefix, "filtered"));
+    this.grouped = registry.meter(name(prefix, "grouped"));
+    this.suppressed = registry.meter(name(prefix, "suppressed"));
+    this.stale = registry.meter(name(prefix, "stale"));
+    this.retries = registry.meter(name(prefix, "retries"));
+    this.payloadBytes = registry.histogram(name(prefix, "payloadBytes"));
+    this.httpLatency = registry.timer(name(prefix, "httpLatency"));
+    this.rateLimited = registry.meter(name(prefix, "rateLimited"));
+    this.dropped = registry.meter(name(prefix, "dropped"));
+    for (StageTimer.Stage stage : StageTimer.Stage.values()) {
+      stages.put(stage, registry.timer(name(prefix, "stage", stage.metricName())));
+    }
+    for (SlackResponse.Status status : SlackResponse.Status.values()) {
+      results.put(
+          status,
+          registry.counter(name(prefix, "results", status.name().toLowerCase(Locale.ENGLISH))));
+    }
+  }
+
+  /** Name prefix of all metrics. */
+  public String getName() {
+    return prefix;
+  }
+
+  /** Simple class name of the output or alarm callback. */
+  public String getOwner() {
+    return owner;
+  }
+
+  /** Stream ID of the output or alarm callback. */
+  public String getId() {
+    return id;
+  }
+
+  /** Name of the output or alarm callback among those of its stream, or null. */
+  public String getInstance() {
+    return instance;
+  }
+
+  /** A Slack message was built and is ready to be sent. */
+  public void markRendered() {
+    rendered.mark();
+  }
+
+  public long getRendered() {
+    return rendered.getCount();
+  }
+
+  /** A message was rejected by the output's filter and not rendered. */
+  public void markFiltered() {
+    filtered.mark();
+  }
+
+  public long getFiltered() {
+    return filtered.getCount();
+  }
+
+  /** A message repeated an incident, and updated its Slack message or was folded into it. */
+  public void markGrouped() {
+    grouped.mark();
+  }
+
+  public long getGrouped() {
+    return grouped.getCount();
+  }
+
+  /** An alert was not sent because the plugin-wide alert budget was used up. */
+  public void markSuppressed() {
+    suppressed.mark();
+  }
+
+  public long getSuppressed() {
+    return suppressed.getCount();
+  }
+
+  /** A queued message was skipped because it was older than the output's maximum age. */
+  public void markStale() {
+    stale.mark();
+  }
+
+  public long getStale() {
+    return stale.getCount();
+  }
+
+  /** A queued post failed, and its messages were queued again to be retried. */
+  public void markRetried() {
+    retries.mark();
+  }
+
+  public long getRetries() {
+    return retries.getCount();
+  }
+
+  public void updatePayloadBytes(int bytes) {
+    payloadBytes.update(bytes);
+  }
+
+  /** Start timing an HTTP round trip to Slack. */
+  public Timer.Context timeRequest() {
+    return httpLatency.time();
+  }
+
+  /** Count an HTTP response from Slack by status code. */
+  public void markResponse(int statusCode) {
+    responses
+        .computeIfAbsent(
+            statusCode, code -> registry.counter(name(prefix, "responses", code.toString())))
+        .inc();
+  }
+
+  /** Count a classified response from Slack, and remember the wait time if rate limited. */
+  public void markResult(SlackResponse response) {
+    results.get(response.getStatus()).inc();
+    if (response.getStatus() == SlackResponse.Status.RATE_LIMITED) {
+      rateLimited.mark();
+      rateLimitedUntil.set(System.currentTimeMillis() + response.getRetryAfterMillis());
+    }
+  }
+
+  /** Remaining time of the last rate limit in milliseconds, 0 if not rate limited. */
+  public long getRateLimitWaitMillis() {
+    return Math.max(0, rateLimitedUntil.get() - System.currentTimeMillis());
+  }
+
+  /** A send to Slack has started. Must be followed by {@link #finishSend()}. */
+  public void startSend() {
+    inFlight.incrementAndGet();
+  }
+
+  public void finishSend() {
+    inFlight.decrementAndGet();
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * A message could not be delivered and was given up.
+   *
+   * @param cause the reason
+   */
+  public void markDropped(Throwable cause) {
+    dropped.mark();
+    lastErrorAt.set(System.currentTimeMillis());
+    lastError.set(cause.getMessage());
+  }
+
+  public long getDropped() {
+    return dropped.getCount();
+  }
+
+  /** Message of the last delivery error, or null. */
+  public String getLastError() {
+    return lastError.get();
+  }
+
+  /** Epoch milliseconds of the last delivery error, 0 if none. */
+  public long getLastErrorAt() {
+    return lastErrorAt.get();
+  }
+
+  /**
+   * Record the stage timings of a notification, and log them if it took longer than the
+   * threshold.
+   *
+   * @param timer stage timings of one notification
+   * @param slowThresholdMillis log threshold in milliseconds, 0 to never log
+   */
+  public void record(StageTimer timer, long slowThresholdMillis) {
+    for (Map.Entry<StageTimer.Stage, Timer> stage : stages.entrySet()) {
+      final long nanos = timer.getNanos(stage.getKey());
+      if (nanos > 0) {
+        stage.getValue().update(nanos, TimeUnit.NANOSECONDS);
+      }
+    }
+    if (slowThresholdMillis > 0
+        && timer.getTotalNanos() > TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis)) {
+      LOG.warn("Slow Slack notification {}: {}", prefix, timer);
+    }
+  }
+
+  /**
+   * Register a gauge of the delivery state, replacing a gauge of the same name.
+   *
+   * @param gaugeName name relative to {@link #getName()}
+   * @param gauge the gauge
+   */
+  public void gauge(String gaugeName, Gauge<Integer> gauge) {
+    final String metricName = name(prefix, gaugeName);
+    registry.remove(metricName);
+    registry.register(metricName, gauge);
+    gauges.put(gaugeName, gauge);
+  }
+
+  /** Current value of a gauge registered with {@link #gauge(String, Gauge)}, or null. */
+  public Integer getGauge(String gaugeName) {
+    final Gauge<Integer> gauge = gauges.get(gaugeName);
+    return gauge == null ? null : gauge.getValue();
+  }
+
+  /** Remove all metrics of this owner from the registry. */
+  public void remove() {
+    registry.removeMatching((metricName, metric) -> metricName.startsWith(prefix + '.'));
+    gauges.clear();
+  }
+}
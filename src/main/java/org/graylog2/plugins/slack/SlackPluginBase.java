@@ -1,9 +1,12 @@
 package org.graylog2.plugins.slack;
 
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Arrays;
-import org.graylog2.plugin.Message;
+import java.util.Map;
+import java.util.TreeMap;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.configuration.ConfigurationException;
 import org.graylog2.plugin.configuration.ConfigurationRequest;
@@ -12,6 +15,7 @@ import org.graylog2.plugin.configuration.fields.ConfigurationField;
 import org.graylog2.plugin.configuration.fields.NumberField;
 import org.graylog2.plugin.configuration.fields.TextField;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugins.slack.transport.SlackWebApi;
 
 public class SlackPluginBase {
   public static final String CK_WEBHOOK_URL = "webhook_url";
@@ -33,6 +37,20 @@ public class SlackPluginBase {
   public static final String CK_ACKNOWLEDGE = "acknowledge";
   public static final String CK_TOKEN = "token";
   public static final String CK_PREFORMAT = "preformat";
+  public static final String CK_SLOW_THRESHOLD = "slow_threshold";
+  public static final String CK_PARALLEL_THRESHOLD = "parallel_threshold";
+  public static final String CK_WARM_UP = "warm_up";
+  public static final String CK_BATCH_SIZE = "batch_size";
+  public static final String CK_SEND_CONCURRENCY = "send_concurrency";
+  public static final String CK_DESTINATIONS = "destinations";
+  public static final String CK_FILTER = "filter";
+  public static final String CK_INCIDENT_KEY = "incident_key";
+  public static final String CK_THREAD_WINDOW = "thread_window";
+  public static final String CK_SNIPPET_THRESHOLD = "snippet_threshold";
+  public static final String CK_MAX_AGE = "max_age";
+
+  protected static final int DEFAULT_PARALLEL_THRESHOLD = 20;
+  protected static final int DEFAULT_SEND_CONCURRENCY = 4;
 
   protected static ConfigurationRequest configuration() {
     final ConfigurationRequest configurationRequest = new ConfigurationRequest();
@@ -89,7 +107,7 @@ public class SlackPluginBase {
             CK_NOTIFY_USER,
             "Notify User",
             "",
-            "Also notify user in channel by adding @user to the message. You can also use ${field[:-default]} in this text. If acknowledgement is enabled, you need to provide Slack's token too.",
+            "Also notify user in channel by adding @user to the message. You can also use ${field[:-default]} in this text. If acknowledgement is enabled, you need to provide Slack's token too. With a Slack token, @user names and emails are turned into mentions of the user's ID",
             ConfigurationField.Optional.OPTIONAL));
     configurationRequest.addField(
         new BooleanField(
@@ -144,7 +162,7 @@ public class SlackPluginBase {
             CK_FIELDS,
             "Backlog fields",
             null,
-            "Add fields from backlog item(s) into alert (field1, field2...).",
+            "Add fields from backlog item(s) into alert (field1, field2...). Nested fields can be added with a dotted path (http.method). Values can be formatted with field|number, field|date or field|<max length>.",
             ConfigurationField.Optional.OPTIONAL));
     configurationRequest.addField(
         new BooleanField(
@@ -167,9 +185,142 @@ public class SlackPluginBase {
             null,
             "Require if you want to use acknowledge buttons with user notification. Slack do not allow to mention user while using webhook URL from Slack app.",
             ConfigurationField.Optional.OPTIONAL));
+    configurationRequest.addField(
+        new NumberField(
+            CK_SLOW_THRESHOLD,
+            "Slow notification threshold (ms)",
+            0,
+            "Log a time breakdown (backlog, render, encode, send) of notifications taking longer than this. If value is 0, nothing will be logged. (For Output) Batched posts answered slower than this, or 1000 ms if 0, shrink the batch size",
+            ConfigurationField.Optional.OPTIONAL,
+            NumberField.Attribute.ONLY_POSITIVE));
+    configurationRequest.addField(
+        new NumberField(
+            CK_PARALLEL_THRESHOLD,
+            "Parallel rendering threshold",
+            DEFAULT_PARALLEL_THRESHOLD,
+            "(For Notification) Render backlog attachments in parallel when at least this many backlog items are attached. If value is 0, they are always rendered one by one",
+            ConfigurationField.Optional.OPTIONAL,
+            NumberField.Attribute.ONLY_POSITIVE));
+    configurationRequest.addField(
+        new BooleanField(
+            CK_WARM_UP,
+            "Warm up connection",
+            false,
+            "Resolve Slack's address and connect in the background ahead of the first message, and keep the connection open while messages are sent"));
+    configurationRequest.addField(
+        new NumberField(
+            CK_BATCH_SIZE,
+            "Maximum batch size",
+            1,
+            "(For Output) Queue messages and send up to this many as one Slack post. The batch size and the concurrent posts grow while Slack answers quickly, and are halved on rate limits, errors and slow answers. If value is 1, every message is sent on its own while it is written",
+            ConfigurationField.Optional.OPTIONAL,
+            NumberField.Attribute.ONLY_POSITIVE));
+    configurationRequest.addField(
+        new NumberField(
+            CK_SEND_CONCURRENCY,
+            "Maximum concurrent posts",
+            DEFAULT_SEND_CONCURRENCY,
+            "(For Output) Upper limit of batched posts sent to Slack at the same time",
+            ConfigurationField.Optional.OPTIONAL,
+            NumberField.Attribute.ONLY_POSITIVE));
+    configurationRequest.addField(
+        new NumberField(
+            CK_MAX_AGE,
+            "Maximum message age (minutes)",
+            0,
+            "(For Output) Skip queued messages older than this when they are sent, e.g. after a Slack outage, and post how many were skipped instead. The age counts from the message timestamp. Applies to batching and additional destinations. If value is 0, every message is sent",
+            ConfigurationField.Optional.OPTIONAL,
+            NumberField.Attribute.ONLY_POSITIVE));
+    configurationRequest.addField(
+        new TextField(
+            CK_DESTINATIONS,
+            "Additional destinations",
+            null,
+            "(For Output) Also send every message to these webhooks or workspaces, separated by commas or new lines: <webhook URL or token> [#channel]. Messages are rendered once and delivered to every destination independently",
+            ConfigurationField.Optional.OPTIONAL,
+            TextField.Attribute.TEXTAREA));
+    configurationRequest.addField(
+        new TextField(
+            CK_FILTER,
+            "Message filter",
+            null,
+            "(For Output) Only send messages matching this expression, e.g. level <= 3 AND NOT source =~ \"^test-\". Conditions are field (present), field = value, field != value, <, <=, >, >= for numbers and =~, !~ for regular expressions, combined with AND, OR, NOT and parentheses",
+            ConfigurationField.Optional.OPTIONAL));
+    configurationRequest.addField(
+        new TextField(
+            CK_INCIDENT_KEY,
+            "Group repeats by",
+            null,
+            "Keep updating one Slack message while the same problem repeats, instead of posting a new one. Repeats have the same text here, where ${field[:-default]} is replaced from the message (for Notification, from the first backlog item), e.g. ${source}/${error_code}. Requires Slack token",
+            ConfigurationField.Optional.OPTIONAL));
+    configurationRequest.addField(
+        new NumberField(
+            CK_THREAD_WINDOW,
+            "Thread follow-ups for (minutes)",
+            0,
+            "(For Notification) Post later alerts of the same stream and condition as replies in the thread of the first alert, for this many minutes after it. If value is 0, every alert is posted to the channel. Requires Slack token",
+            ConfigurationField.Optional.OPTIONAL,
+            NumberField.Attribute.ONLY_POSITIVE));
+    configurationRequest.addField(
+        new NumberField(
+            CK_SNIPPET_THRESHOLD,
+            "Snippet threshold (characters)",
+            0,
+            "(For Notification) Backlog messages longer than this are shortened to their first line, and uploaded in full as a file snippet in the alert's thread. If value is 0, messages are always sent inline. Requires Slack token",
+            ConfigurationField.Optional.OPTIONAL,
+            NumberField.Attribute.ONLY_POSITIVE));
     return configurationRequest;
   }
 
+  /**
+   * Web API access to look up channels and users, if a Slack token is configured.
+   *
+   * @param configuration an output or alarm callback configuration
+   * @return the workspace, or null without a token
+   */
+  protected static SlackWebApi webApi(Configuration configuration) {
+    final String token = configuration.getString(CK_TOKEN);
+    if (token == null || token.isEmpty()) {
+      return null;
+    }
+    return new SlackWebApi(
+        token, SlackClient.DEFAULT_API_URL, configuration.getString(CK_PROXY_ADDRESS));
+  }
+
+  /**
+   * Stable ID of the webhook, workspace and channel an output or alarm callback posts to. It is a
+   * hash, so keys built from it can be kept and persisted without revealing the token.
+   *
+   * @param configuration an output or alarm callback configuration
+   * @return a hex encoded SHA-256 hash
+   */
+  protected static String destinationId(Configuration configuration) {
+    return Hashing.sha256()
+        .hashString(
+            configuration.getString(CK_WEBHOOK_URL)
+                + '|'
+                + configuration.getString(CK_TOKEN)
+                + '|'
+                + configuration.getString(CK_CHANNEL),
+            Charsets.UTF_8)
+        .toString();
+  }
+
+  /**
+   * Short hash of a whole configuration, stable while the configuration does not change.
+   *
+   * @param configuration an output or alarm callback configuration
+   * @return 12 hex digits
+   */
+  protected static String configurationId(Configuration configuration) {
+    final Map<String, Object> source = configuration.getSource();
+    return Hashing.sha256()
+        .hashString(
+            source == null ? "" : new TreeMap<>(source).toString(), Charsets.UTF_8)
+        .toString()
+        .substring(0, 12);
+  }
+
   protected static void checkConfiguration(Configuration configuration)
       throws ConfigurationException {
     if (!configuration.stringIsSet(CK_WEBHOOK_URL)) {
@@ -184,9 +335,40 @@ public class SlackPluginBase {
       throw new ConfigurationException(CK_COLOR + " is mandatory and must not be empty.");
     }
 
+    if (configuration.stringIsSet(CK_INCIDENT_KEY) && !configuration.stringIsSet(CK_TOKEN)) {
+      // Webhooks answer without the message to update
+      throw new ConfigurationException(CK_INCIDENT_KEY + " requires " + CK_TOKEN + ".");
+    }
+
+    if (configuration.stringIsSet(CK_INCIDENT_KEY)
+        && (configuration.getInt(CK_BATCH_SIZE, 1) > 1
+            || configuration.stringIsSet(CK_DESTINATIONS))) {
+      throw new ConfigurationException(
+          "Repeats can't be grouped together with batching or additional destinations.");
+    }
+
     checkUri(configuration, CK_PROXY_ADDRESS);
     checkUri(configuration, CK_GRAYLOG2_URL);
     checkUri(configuration, CK_FOOTER_ICON_URL);
+
+    try {
+      FieldExtractor.compile(configuration.getString(CK_FIELDS));
+    } catch (IllegalArgumentException e) {
+      throw new ConfigurationException("Couldn't parse " + CK_FIELDS + ": " + e.getMessage());
+    }
+
+    try {
+      MessageFilter.compile(configuration.getString(CK_FILTER));
+    } catch (IllegalArgumentException e) {
+      throw new ConfigurationException("Couldn't parse " + CK_FILTER + ": " + e.getMessage());
+    }
+
+    try {
+      SlackDestination.parse(configuration.getString(CK_DESTINATIONS));
+    } catch (IllegalArgumentException e) {
+      throw new ConfigurationException(
+          "Couldn't parse " + CK_DESTINATIONS + ": " + e.getMessage());
+    }
   }
 
   public static boolean isValidUriScheme(URI uri, String... validSchemes) {
@@ -215,11 +397,11 @@ public class SlackPluginBase {
     return builder.append("streams/").append(stream.getId()).append("/messages?q=*&rangetype=relative&relative=3600").toString();
   }
 
-  protected String buildMessageLink(String baseUrl, Message message) {
+  protected String buildMessageLink(String baseUrl, String index, String messageId) {
     StringBuilder builder = new StringBuilder(baseUrl);
     if (!baseUrl.endsWith("/")) {
         builder.append('/');
     }
-    return builder.append("messages/").append(message.getField("gl2_document_index")).append('/').append(message.getId()).toString();
+    return builder.append("messages/").append(index).append('/').append(messageId).toString();
   }
 }
@@ -0,0 +1,176 @@
+package org.graylog2.plugins.slack;
+
+import com.github.joschi.jadconfig.Parameter;
+import com.github.joschi.jadconfig.util.Duration;
+import com.github.joschi.jadconfig.validators.PositiveDurationValidator;
+import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
+import org.graylog2.plugin.PluginConfigBean;
+
+/**
+ * Plugin-wide settings read from <code>graylog.conf</code>. These are shared by every configured
+ * output and alarm callback, unlike the per-instance {@link SlackPluginBase} configuration.
+ */
+public class SlackPluginConfiguration implements PluginConfigBean {
+  private static final String PREFIX = "slack_";
+
+  /** Slack App "Signing Secret". If not set, action requests are not verified. */
+  @Parameter(value = PREFIX + "signing_secret")
+  private String signingSecret;
+
+  /** Deprecated Slack App "Verification Token", checked against the payload when set. */
+  @Parameter(value = PREFIX + "verification_token")
+  private String verificationToken;
+
+  /** Maximum clock difference accepted for <code>X-Slack-Request-Timestamp</code>. */
+  @Parameter(value = PREFIX + "request_max_age", validator = PositiveDurationValidator.class)
+  private Duration requestMaxAge = Duration.minutes(5);
+
+  /**
+   * Interval at which warmed-up connections are refreshed. Must be shorter than the idle timeout of
+   * the JDK's keep-alive cache, which is 5 seconds unless Slack announces a longer one.
+   */
+  @Parameter(
+      value = PREFIX + "warm_up_refresh_interval",
+      validator = PositiveDurationValidator.class)
+  private Duration warmUpRefreshInterval = Duration.seconds(4);
+
+  /** How long connections are kept warm after the last message was sent. */
+  @Parameter(value = PREFIX + "warm_up_keep_warm", validator = PositiveDurationValidator.class)
+  private Duration warmUpKeepWarm = Duration.minutes(10);
+
+  /** Transport used to deliver messages, see {@link SlackTransports}. */
+  @Parameter(value = PREFIX + "transport", validator = SlackTransports.NameValidator.class)
+  private String transport = SlackTransports.HTTP;
+
+  /** File the <code>recording</code> transport appends messages to. */
+  @Parameter(value = PREFIX + "transport_recording_file")
+  private String transportRecordingFile;
+
+  /** How long an incident is remembered after it was last seen, see {@link SlackIncidents}. */
+  @Parameter(value = PREFIX + "incident_ttl", validator = PositiveDurationValidator.class)
+  private Duration incidentTtl = Duration.hours(1);
+
+  /** Maximum number of incidents remembered, the least recently seen are forgotten first. */
+  @Parameter(value = PREFIX + "incident_max_entries", validator = PositiveIntegerValidator.class)
+  private int incidentMaxEntries = 10000;
+
+  /** Minimum time between two updates of the same incident's Slack message. */
+  @Parameter(
+      value = PREFIX + "incident_update_interval",
+      validator = PositiveDurationValidator.class)
+  private Duration incidentUpdateInterval = Duration.seconds(10);
+
+  /** Maximum number of alert threads remembered, see {@link SlackThreads}. */
+  @Parameter(value = PREFIX + "thread_max_entries", validator = PositiveIntegerValidator.class)
+  private int threadMaxEntries = 10000;
+
+  /** How long the channel IDs of a workspace are cached, see {@link SlackChannels}. */
+  @Parameter(value = PREFIX + "channel_cache_ttl", validator = PositiveDurationValidator.class)
+  private Duration channelCacheTtl = Duration.hours(1);
+
+  /** How long user IDs, and users that were not found, are cached, see {@link SlackUsers}. */
+  @Parameter(value = PREFIX + "user_cache_ttl", validator = PositiveDurationValidator.class)
+  private Duration userCacheTtl = Duration.hours(1);
+
+  /** Maximum number of cached user mentions. */
+  @Parameter(value = PREFIX + "user_cache_max_entries", validator = PositiveIntegerValidator.class)
+  private int userCacheMaxEntries = 10000;
+
+  /**
+   * Maximum number of alert notifications per minute, shared by all alarm callbacks. Further
+   * alerts are summarized, see {@link SlackAlertBudget}. 0 means unlimited.
+   */
+  @Parameter(value = PREFIX + "alert_budget", validator = PositiveIntegerValidator.class)
+  private int alertBudget = 0;
+
+  /** Interval at which alerts beyond the budget are summarized. */
+  @Parameter(
+      value = PREFIX + "alert_budget_summary_interval",
+      validator = PositiveDurationValidator.class)
+  private Duration alertBudgetSummaryInterval = Duration.minutes(1);
+
+  /**
+   * File incidents and alert threads are kept in across restarts, see {@link SlackStateStore}. If
+   * not set, they are only kept in memory.
+   */
+  @Parameter(value = PREFIX + "state_file")
+  private String stateFile;
+
+  /** Interval at which the state file is written. */
+  @Parameter(
+      value = PREFIX + "state_snapshot_interval",
+      validator = PositiveDurationValidator.class)
+  private Duration stateSnapshotInterval = Duration.minutes(1);
+
+  public String getSigningSecret() {
+    return signingSecret;
+  }
+
+  public String getVerificationToken() {
+    return verificationToken;
+  }
+
+  public Duration getRequestMaxAge() {
+    return requestMaxAge;
+  }
+
+  public Duration getWarmUpRefreshInterval() {
+    return warmUpRefreshInterval;
+  }
+
+  public Duration getWarmUpKeepWarm() {
+    return warmUpKeepWarm;
+  }
+
+  public String getTransport() {
+    return transport;
+  }
+
+  public String getTransportRecordingFile() {
+    return transportRecordingFile;
+  }
+
+  public Duration getIncidentTtl() {
+    return incidentTtl;
+  }
+
+  public int getIncidentMaxEntries() {
+    return incidentMaxEntries;
+  }
+
+  public Duration getIncidentUpdateInterval() {
+    return incidentUpdateInterval;
+  }
+
+  public int getThreadMaxEntries() {
+    return threadMaxEntries;
+  }
+
+  public Duration getChannelCacheTtl() {
+    return channelCacheTtl;
+  }
+
+  public Duration getUserCacheTtl() {
+    return userCacheTtl;
+  }
+
+  public int getUserCacheMaxEntries() {
+    return userCacheMaxEntries;
+  }
+
+  public int getAlertBudget() {
+    return alertBudget;
+  }
+
+  public Duration getAlertBudgetSummaryInterval() {
+    return alertBudgetSummaryInterval;
+  }
+
+  public String getStateFile() {
+    return stateFile;
+  }
+
+  public Duration getStateSnapshotInterval() {
+    return stateSnapshotInterval;
+  }
+}
@@ -1,15 +1,33 @@
 package org.graylog2.plugins.slack;
 
+import java.util.Collections;
+import java.util.Set;
+import org.graylog2.plugin.PluginConfigBean;
 import org.graylog2.plugin.PluginModule;
 import org.graylog2.plugins.slack.callback.SlackAlarmCallback;
 import org.graylog2.plugins.slack.output.SlackMessageOutput;
 import org.graylog2.plugins.slack.rest.SlackActionCallback;
+import org.graylog2.plugins.slack.rest.SlackStatisticsResource;
 
 public class SlackPluginModule extends PluginModule {
+  private final SlackPluginConfiguration pluginConfiguration = new SlackPluginConfiguration();
+
+  @Override
+  public Set<? extends PluginConfigBean> getConfigBeans() {
+    return Collections.singleton(pluginConfiguration);
+  }
+
   @Override
   protected void configure() {
+    addConfigBeans();
+    bind(SlackPluginConfiguration.class).toInstance(pluginConfiguration);
+    bind(SlackTransport.Factory.class).to(SlackTransports.class);
+    // Read the persisted state at startup, before the first alert is handled
+    bind(SlackStateStore.class).asEagerSingleton();
+
     addAlarmCallback(SlackAlarmCallback.class);
     addMessageOutput(SlackMessageOutput.class);
     addRestResource(SlackActionCallback.class);
+    addRestResource(SlackStatisticsResource.class);
   }
 }
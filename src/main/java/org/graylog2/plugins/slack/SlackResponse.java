@@ -0,0 +1,232 @@
+package org.graylog2.plugins.slack;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a request to Slack, classified from the HTTP status and the response body.
+ *
+ * <p>Webhooks answer with a plain text body, <code>ok</code> or an error code, and an HTTP error
+ * status on failure. The Web API answers with HTTP 200 and <code>{"ok":false,"error":"..."}
+ * </code> on most failures. The body is streamed and only <code>ok</code>, <code>error</code>,
+ * <code>channel</code> and <code>ts</code> are read. Successful requests without a message
+ * timestamp, like every webhook request, return the shared {@link #SUCCESS} instance.
+ */
+public final class SlackResponse {
+  public enum Status {
+    /** Slack accepted the message. */
+    SUCCESS,
+    /** A temporary failure, the same request may succeed later. */
+    RETRYABLE,
+    /** Slack asked to wait for {@link #getRetryAfterMillis()} before the next request. */
+    RATE_LIMITED,
+    /** The request will never succeed, e.g. an unknown channel or an invalid token. */
+    PERMANENT
+  }
+
+  public static final SlackResponse SUCCESS =
+      new SlackResponse(Status.SUCCESS, 200, null, 0, null, null);
+
+  private static final JsonFactory JSON_FACTORY =
+      new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+  private static final int MAX_ERROR_LENGTH = 1024;
+  private static final long DEFAULT_RETRY_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(1);
+  private static final Set<String> RATE_LIMITED_ERRORS =
+      ImmutableSet.of("rate_limited", "ratelimited");
+  private static final Set<String> RETRYABLE_ERRORS =
+      ImmutableSet.of(
+          "internal_error", "fatal_error", "service_unavailable", "request_timeout", "timeout");
+
+  private final Status status;
+  private final int statusCode;
+  private final String error;
+  private final long retryAfterMillis;
+  private final String channel;
+  private final String ts;
+
+  private SlackResponse(
+      Status status,
+      int statusCode,
+      String error,
+      long retryAfterMillis,
+      String channel,
+      String ts) {
+    this.status = status;
+    this.statusCode = statusCode;
+    this.error = error;
+    this.retryAfterMillis = retryAfterMillis;
+    this.channel = channel;
+    this.ts = ts;
+  }
+
+  private SlackResponse(Status status, int statusCode, String error, long retryAfterMillis) {
+    this(status, statusCode, error, retryAfterMillis, null, null);
+  }
+
+  /**
+   * Classify a response. The body is read to the end, but not closed.
+   *
+   * @param statusCode HTTP status code
+   * @param retryAfter value of the <code>Retry-After</code> header, or null
+   * @param body response body, or null
+   * @return the classified response
+   * @throws IOException if the body could not be read
+   */
+  public static SlackResponse parse(int statusCode, String retryAfter, InputStream body)
+      throws IOException {
+    if (statusCode == 200) {
+      return parseOk(retryAfter, body);
+    }
+    final String error = readError(body);
+    if (statusCode == 429) {
+      return new SlackResponse(
+          Status.RATE_LIMITED, statusCode, error, getRetryAfterMillis(retryAfter));
+    }
+    if (statusCode >= 500 || statusCode == 408) {
+      return new SlackResponse(Status.RETRYABLE, statusCode, error, 0);
+    }
+    return new SlackResponse(Status.PERMANENT, statusCode, error, 0);
+  }
+
+  private static SlackResponse parseOk(String retryAfter, InputStream body) throws IOException {
+    if (body == null) {
+      return SUCCESS;
+    }
+    final PushbackInputStream in = new PushbackInputStream(body, 1);
+    int first = in.read();
+    while (first == ' ' || first == '\n' || first == '\r' || first == '\t') {
+      first = in.read();
+    }
+    if (first != '{') {
+      // Webhooks answer "ok"
+      ByteStreams.copy(in, ByteStreams.nullOutputStream());
+      return SUCCESS;
+    }
+    in.unread(first);
+
+    boolean ok = false;
+    String error = null;
+    String channel = null;
+    String ts = null;
+    try (final JsonParser parser = JSON_FACTORY.createParser(in)) {
+      if (parser.nextToken() == JsonToken.START_OBJECT) {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          final String field = parser.getCurrentName();
+          final JsonToken value = parser.nextToken();
+          if ("ok".equals(field)) {
+            ok = value == JsonToken.VALUE_TRUE;
+          } else if (value != JsonToken.VALUE_STRING) {
+            parser.skipChildren();
+          } else if ("error".equals(field)) {
+            error = parser.getText();
+          } else if ("channel".equals(field)) {
+            channel = parser.getText();
+          } else if ("ts".equals(field)) {
+            ts = parser.getText();
+          } else {
+            parser.skipChildren();
+          }
+        }
+      }
+    }
+    ByteStreams.copy(in, ByteStreams.nullOutputStream());
+    if (ok) {
+      return ts == null ? SUCCESS : new SlackResponse(Status.SUCCESS, 200, null, 0, channel, ts);
+    }
+    if (error == null) {
+      return new SlackResponse(Status.PERMANENT, 200, "unknown_error", 0);
+    }
+    if (RATE_LIMITED_ERRORS.contains(error)) {
+      return new SlackResponse(Status.RATE_LIMITED, 200, error, getRetryAfterMillis(retryAfter));
+    }
+    if (RETRYABLE_ERRORS.contains(error)) {
+      return new SlackResponse(Status.RETRYABLE, 200, error, 0);
+    }
+    return new SlackResponse(Status.PERMANENT, 200, error, 0);
+  }
+
+  /** Error code of a webhook, or the <code>error</code> of a Web API response. */
+  private static String readError(InputStream body) throws IOException {
+    if (body == null) {
+      return null;
+    }
+    final byte[] bytes = ByteStreams.toByteArray(ByteStreams.limit(body, MAX_ERROR_LENGTH));
+    ByteStreams.copy(body, ByteStreams.nullOutputStream());
+    final String text = new String(bytes, Charsets.UTF_8).trim();
+    if (text.startsWith("{")) {
+      try (final JsonParser parser = JSON_FACTORY.createParser(text)) {
+        while (parser.nextToken() != null) {
+          if (parser.getCurrentToken() == JsonToken.FIELD_NAME
+              && "error".equals(parser.getCurrentName())
+              && parser.nextToken() == JsonToken.VALUE_STRING) {
+            return parser.getText();
+          }
+        }
+      } catch (IOException e) {
+        // not JSON after all
+      }
+    }
+    return text.isEmpty() ? null : text;
+  }
+
+  private static long getRetryAfterMillis(String retryAfter) {
+    if (retryAfter != null) {
+      try {
+        return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+      } catch (NumberFormatException e) {
+        // fall through
+      }
+    }
+    return DEFAULT_RETRY_AFTER_MILLIS;
+  }
+
+  public Status getStatus() {
+    return status;
+  }
+
+  public boolean isSuccess() {
+    return status == Status.SUCCESS;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /** Slack's error code, or null. */
+  public String getError() {
+    return error;
+  }
+
+  /** Requested wait time before the next request, only set if rate limited. */
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+
+  /** ID of the channel a Web API message was posted to, or null. */
+  public String getChannel() {
+    return channel;
+  }
+
+  /** Timestamp identifying a message posted with the Web API, or null. */
+  public String getTs() {
+    return ts;
+  }
+
+  @Override
+  public String toString() {
+    return status.name().toLowerCase(Locale.ENGLISH)
+        + " (HTTP "
+        + statusCode
+        + (error == null ? ")" : ", " + error + ")");
+  }
+}
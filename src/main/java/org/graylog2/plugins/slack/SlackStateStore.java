@@ -0,0 +1,164 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps {@link SlackIncidents} and {@link SlackThreads} across restarts, so ongoing problems are
+ * not notified again as new ones after graylog-server was restarted.
+ *
+ * <p>The state is written as a compact binary snapshot to <code>slack_state_file</code>,
+ * periodically and when an output is stopped, and read once when the plugin starts. Entries which
+ * expired while the server was down are skipped. A snapshot is written to a temporary file first
+ * and then moved over the previous one, so a crash never leaves a partial snapshot. The file is
+ * only readable by its owner. Keys contain no tokens, see {@link SlackPluginBase#destinationId}.
+ * Without a state file nothing is persisted.
+ */
+@Singleton
+public class SlackStateStore {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackStateStore.class);
+  private static final int MAGIC = 0x534c4b53;
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path file;
+  private final SlackIncidents incidents;
+  private final SlackThreads threads;
+
+  @Inject
+  public SlackStateStore(
+      SlackPluginConfiguration configuration, SlackIncidents incidents, SlackThreads threads) {
+    this(
+        configuration.getStateFile() == null ? null : Paths.get(configuration.getStateFile()),
+        configuration.getStateSnapshotInterval().toMilliseconds(),
+        incidents,
+        threads);
+  }
+
+  /**
+   * @param file snapshot file, or null to persist nothing
+   * @param intervalMillis interval of periodic snapshots, 0 for none
+   */
+  SlackStateStore(Path file, long intervalMillis, SlackIncidents incidents, SlackThreads threads) {
+    this.file = file;
+    this.incidents = incidents;
+    this.threads = threads;
+    if (file == null) {
+      return;
+    }
+    load();
+    if (intervalMillis > 0) {
+      final ScheduledExecutorService executor =
+          Executors.newSingleThreadScheduledExecutor(
+              new ThreadFactoryBuilder().setNameFormat("slack-state").setDaemon(true).build());
+      executor.scheduleWithFixedDelay(
+          this::save, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Write a snapshot of the current state. Failures are logged. */
+  public synchronized void save() {
+    if (file == null) {
+      return;
+    }
+    final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      createOwnerOnly(temp);
+      try (final DataOutputStream out =
+          new DataOutputStream(
+              new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        incidents.writeTo(out);
+        threads.writeTo(out);
+      }
+      Files.move(
+          temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Could not write Slack plugin state to {}: {}", file, e.getMessage());
+    }
+  }
+
+  private static void createOwnerOnly(Path path) throws IOException {
+    Files.deleteIfExists(path);
+    try {
+      Files.createFile(
+          path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    } catch (UnsupportedOperationException e) {
+      // not a POSIX file system
+      Files.createFile(path);
+    }
+  }
+
+  /** Read the snapshot, which is small enough to be read at once and parsed without copying. */
+  private void load() {
+    final long start = System.nanoTime();
+    final ByteBuffer in;
+    try {
+      in = ByteBuffer.wrap(Files.readAllBytes(file));
+    } catch (NoSuchFileException e) {
+      return;
+    } catch (IOException e) {
+      LOG.warn("Could not read Slack plugin state from {}: {}", file, e.getMessage());
+      return;
+    }
+    try {
+      if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+        LOG.warn("Ignoring Slack plugin state in {}, unknown format", file);
+        return;
+      }
+      final long now = System.currentTimeMillis();
+      incidents.readFrom(in, now);
+      threads.readFrom(in);
+    } catch (BufferUnderflowException e) {
+      LOG.warn("Ignoring the rest of truncated Slack plugin state in {}", file);
+    }
+    LOG.debug(
+        "Read {} incidents and {} threads from {} in {} ms",
+        incidents.size(),
+        threads.size(),
+        file,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(Charsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(ByteBuffer in) {
+    final int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+    if (length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    final String value = new String(in.array(), in.position(), length, Charsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+}
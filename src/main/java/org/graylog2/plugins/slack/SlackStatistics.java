@@ -0,0 +1,69 @@
+package org.graylog2.plugins.slack;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plugin-wide index of the {@link SlackMetrics} of every output and alarm callback, so their
+ * delivery state can be reported in one place.
+ *
+ * <p>Every output instance gets metrics of its own, numbered in order of creation. Graylog creates
+ * alarm callbacks for every alert, so they are named by a hash of their configuration instead, and
+ * every alert of the same callback adds to the same metrics.
+ */
+@Singleton
+public class SlackStatistics {
+  private final MetricRegistry metricRegistry;
+  private final ConcurrentMap<String, SlackMetrics> metrics = new ConcurrentHashMap<>();
+  private final AtomicLong instances = new AtomicLong();
+
+  @Inject
+  public SlackStatistics(MetricRegistry metricRegistry) {
+    this.metricRegistry = metricRegistry;
+  }
+
+  /**
+   * Get the metrics of an output or alarm callback, creating them on first use.
+   *
+   * @param owner class of the output or alarm callback
+   * @param id stream ID, or null
+   * @param instance name of the output or alarm callback among those of the stream
+   * @return metrics shared by all callers with the same owner, ID and instance
+   */
+  public SlackMetrics get(Class<?> owner, String id, String instance) {
+    final String name = MetricRegistry.name(owner, id, instance);
+    final SlackMetrics existing = metrics.get(name);
+    if (existing != null) {
+      return existing;
+    }
+    return metrics.computeIfAbsent(
+        name, n -> new SlackMetrics(metricRegistry, owner, id, instance));
+  }
+
+  /**
+   * Create the metrics of a new output instance.
+   *
+   * @param owner class of the output
+   * @param id stream ID, or null
+   * @return metrics used by no other instance
+   */
+  public SlackMetrics create(Class<?> owner, String id) {
+    return get(owner, id, String.valueOf(instances.incrementAndGet()));
+  }
+
+  /** Forget the metrics and remove them from the metric registry. */
+  public void remove(SlackMetrics slackMetrics) {
+    metrics.remove(slackMetrics.getName(), slackMetrics);
+    slackMetrics.remove();
+  }
+
+  public Collection<SlackMetrics> getAll() {
+    return Collections.unmodifiableCollection(metrics.values());
+  }
+}
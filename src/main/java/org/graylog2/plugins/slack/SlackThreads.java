@@ -0,0 +1,117 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Plugin-wide index of alert threads, so follow-up alerts are posted as replies to the first one
+ * instead of new messages in the channel.
+ *
+ * <p>A thread is identified by a key built by the alarm callback from the stream and the alert
+ * condition. It is remembered with the timestamp and channel ID Slack answered for the first
+ * alert, so only the Web API starts threads. The least recently used threads are forgotten when
+ * the index is full. Threads are kept across restarts by {@link SlackStateStore}.
+ */
+@Singleton
+public class SlackThreads {
+  private final ConcurrentMap<String, Parent> threads;
+
+  @Inject
+  public SlackThreads(SlackPluginConfiguration configuration) {
+    this(configuration.getThreadMaxEntries());
+  }
+
+  SlackThreads(int maxEntries) {
+    this.threads = CacheBuilder.newBuilder().maximumSize(maxEntries).<String, Parent>build().asMap();
+  }
+
+  /**
+   * Get the thread to reply to.
+   *
+   * @param key thread key
+   * @param windowMillis how long after the first alert later alerts are replies
+   * @return the parent message, or null if there is none or it is older than the window
+   */
+  public Parent get(String key, long windowMillis) {
+    final Parent parent = threads.get(key);
+    if (parent == null || System.currentTimeMillis() - parent.postedMillis >= windowMillis) {
+      return null;
+    }
+    return parent;
+  }
+
+  /**
+   * Start a thread with a message that was just posted.
+   *
+   * @param key thread key
+   * @param response Slack's response to the post, ignored if it has no timestamp
+   */
+  public void start(String key, SlackResponse response) {
+    if (response.getTs() != null && response.getChannel() != null) {
+      threads.put(
+          key, new Parent(response.getChannel(), response.getTs(), System.currentTimeMillis()));
+    }
+  }
+
+  /** Number of threads currently remembered. */
+  public int size() {
+    return threads.size();
+  }
+
+  /** Write the threads, see {@link SlackStateStore}. */
+  void writeTo(DataOutputStream out) throws IOException {
+    final List<Map.Entry<String, Parent>> entries = new ArrayList<>(threads.entrySet());
+    out.writeInt(entries.size());
+    for (Map.Entry<String, Parent> entry : entries) {
+      final Parent parent = entry.getValue();
+      SlackStateStore.writeString(out, entry.getKey());
+      SlackStateStore.writeString(out, parent.channel);
+      SlackStateStore.writeString(out, parent.ts);
+      out.writeLong(parent.postedMillis);
+    }
+  }
+
+  /**
+   * Read threads written by {@link #writeTo}. The window of a thread is only known to its alarm
+   * callback, so old threads are kept until {@link #get} finds them outside the window.
+   */
+  void readFrom(ByteBuffer in) {
+    final int count = in.getInt();
+    for (int i = 0; i < count; i++) {
+      final String key = SlackStateStore.readString(in);
+      final String channel = SlackStateStore.readString(in);
+      final String ts = SlackStateStore.readString(in);
+      threads.putIfAbsent(key, new Parent(channel, ts, in.getLong()));
+    }
+  }
+
+  /** The first message of a thread. */
+  public static final class Parent {
+    private final String channel;
+    private final String ts;
+    private final long postedMillis;
+
+    private Parent(String channel, String ts, long postedMillis) {
+      this.channel = channel;
+      this.ts = ts;
+      this.postedMillis = postedMillis;
+    }
+
+    /** ID of the channel the thread is in. */
+    public String getChannel() {
+      return channel;
+    }
+
+    public String getTs() {
+      return ts;
+    }
+  }
+}
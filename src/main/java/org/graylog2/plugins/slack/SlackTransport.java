@@ -0,0 +1,40 @@
+package org.graylog2.plugins.slack;
+
+import org.graylog2.plugin.configuration.Configuration;
+
+/**
+ * Delivers messages to Slack for a {@link SlackClient}. Implementations encode the message, send it
+ * and record payload size, latency and response status in the given metrics.
+ *
+ * @see SlackTransports
+ */
+public interface SlackTransport {
+  /**
+   * Send a message.
+   *
+   * @param message a message to be sent
+   * @param metrics metrics of the sending output or alarm callback
+   * @param stageTimer timings of this notification, the encode and send stages are added
+   * @return Slack's response
+   * @throws SlackClient.SlackClientException if the message was not accepted
+   */
+  SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer)
+      throws SlackClient.SlackClientException;
+
+  /** Prepare for the next send, e.g. open a connection. Failures must only be logged. */
+  default void warmUp() {}
+
+  /**
+   * Key of the resource prepared by {@link #warmUp()}. Transports with equal keys share it.
+   *
+   * @return a key, or null if there is nothing to warm up
+   */
+  default String getWarmUpKey() {
+    return null;
+  }
+
+  /** Creates the transport of an output or alarm callback. */
+  interface Factory {
+    SlackTransport create(Configuration configuration);
+  }
+}
@@ -0,0 +1,133 @@
+package org.graylog2.plugins.slack;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import com.github.joschi.jadconfig.ValidationException;
+import com.github.joschi.jadconfig.Validator;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.nio.file.Paths;
+import java.util.Set;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugins.slack.transport.ChannelResolvingTransport;
+import org.graylog2.plugins.slack.transport.RecordingTransport;
+import org.graylog2.plugins.slack.transport.SlackWebApi;
+import org.graylog2.plugins.slack.transport.WebApiTransport;
+import org.graylog2.plugins.slack.transport.WebhookTransport;
+
+/**
+ * Creates the transport selected by <code>slack_transport</code> in <code>graylog.conf</code>:
+ *
+ * <ul>
+ *   <li><code>http</code> (default): Web API if a Slack token is configured, webhook otherwise
+ *   <li><code>webhook</code> or <code>web_api</code>: always that one
+ *   <li><code>recording</code>: nothing is sent, messages are kept in memory and appended to
+ *       <code>slack_transport_recording_file</code> if set
+ * </ul>
+ *
+ * <p>Web API messages are posted to channel IDs resolved with {@link SlackChannels}.
+ */
+@Singleton
+public class SlackTransports implements SlackTransport.Factory {
+  public static final String HTTP = "http";
+  public static final String WEBHOOK = "webhook";
+  public static final String WEB_API = "web_api";
+  public static final String RECORDING = "recording";
+
+  private static final Set<String> NAMES = ImmutableSet.of(HTTP, WEBHOOK, WEB_API, RECORDING);
+
+  private final String transport;
+  private final String recordingFile;
+  private final SlackChannels channels;
+  private volatile RecordingTransport recordingTransport;
+
+  public SlackTransports(SlackPluginConfiguration configuration) {
+    this(configuration, new SlackChannels(configuration));
+  }
+
+  @Inject
+  public SlackTransports(SlackPluginConfiguration configuration, SlackChannels channels) {
+    this.transport = configuration.getTransport();
+    this.recordingFile = configuration.getTransportRecordingFile();
+    this.channels = channels;
+    if (!NAMES.contains(transport)) {
+      // Only without jadconfig, which checks the setting with NameValidator
+      throw new IllegalArgumentException("Unknown Slack transport " + transport);
+    }
+  }
+
+  @Override
+  public SlackTransport create(Configuration configuration) {
+    switch (transport) {
+      case WEBHOOK:
+        return webhook(configuration);
+      case WEB_API:
+        return resolvingChannels(webApi(configuration, SlackClient.DEFAULT_API_URL), configuration);
+      case RECORDING:
+        return getRecordingTransport();
+      default:
+        return resolvingChannels(http(configuration, SlackClient.DEFAULT_API_URL), configuration);
+    }
+  }
+
+  /** Post to channel IDs if the transport uses the Web API, i.e. a Slack token is configured. */
+  private SlackTransport resolvingChannels(SlackTransport transport, Configuration configuration) {
+    final SlackWebApi api = SlackPluginBase.webApi(configuration);
+    return api == null ? transport : new ChannelResolvingTransport(transport, channels, api);
+  }
+
+  /**
+   * Create the transport used without further configuration.
+   *
+   * @param configuration an output or alarm callback configuration
+   * @param apiUrl base URL of Slack Web API methods, ending with <code>/</code>
+   * @return a Web API transport if a Slack token is configured, a webhook transport otherwise
+   */
+  public static SlackTransport http(Configuration configuration, String apiUrl) {
+    // If `token` is provided, we will use Slack API methods; otherwise Slack's webhook will be used
+    if (isNullOrEmpty(configuration.getString(SlackPluginBase.CK_TOKEN))) {
+      return webhook(configuration);
+    }
+    return webApi(configuration, apiUrl);
+  }
+
+  private static SlackTransport webhook(Configuration configuration) {
+    return new WebhookTransport(
+        configuration.getString(SlackPluginBase.CK_WEBHOOK_URL),
+        configuration.getString(SlackPluginBase.CK_PROXY_ADDRESS));
+  }
+
+  private static SlackTransport webApi(Configuration configuration, String apiUrl) {
+    return new WebApiTransport(
+        configuration.getString(SlackPluginBase.CK_TOKEN),
+        apiUrl,
+        configuration.getString(SlackPluginBase.CK_PROXY_ADDRESS));
+  }
+
+  /** All outputs and alarm callbacks record into the same transport. */
+  private RecordingTransport getRecordingTransport() {
+    if (recordingTransport == null) {
+      synchronized (this) {
+        if (recordingTransport == null) {
+          recordingTransport =
+              new RecordingTransport(
+                  RecordingTransport.DEFAULT_CAPACITY,
+                  isNullOrEmpty(recordingFile) ? null : Paths.get(recordingFile));
+        }
+      }
+    }
+    return recordingTransport;
+  }
+
+  /** Reports an unknown <code>slack_transport</code> as a configuration error. */
+  public static class NameValidator implements Validator<String> {
+    @Override
+    public void validate(String name, String value) throws ValidationException {
+      if (value != null && !NAMES.contains(value)) {
+        throw new ValidationException(
+            "Parameter " + name + " should be one of " + NAMES + " (found " + value + ")");
+      }
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package org.graylog2.plugins.slack;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.graylog2.plugins.slack.transport.SlackWebApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plugin-wide cache of user IDs, so <code>@name</code> and <code>@email</code> mentions become
+ * <code>&lt;@U123&gt;</code> mentions, which Slack apps notify.
+ *
+ * <p>Mentions are resolved without blocking the caller. A mention not cached yet is sent as it is,
+ * and looked up in the background: all mentions of a workspace waiting for a lookup are resolved
+ * with one paginated <code>users.list</code>. Users that were not found in a complete listing are
+ * cached too, so they are not looked up again until the entry expires. If the listing fails, only
+ * the users found so far are cached, and the workspace is not listed again for a minute.
+ */
+@Singleton
+public class SlackUsers {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackUsers.class);
+  /** <code>@name</code> or <code>@email</code>, but not <code>&lt;@U123&gt;</code>. */
+  private static final Pattern MENTION =
+      Pattern.compile("(?<![<\\w])@([\\w.+\\-]+(?:@[\\w.\\-]+)?)");
+  private static final Set<String> SPECIAL = ImmutableSet.of("here", "channel", "everyone");
+  private static final int MAX_PAGES = 250;
+  private static final String PAGE_SIZE = "200";
+  private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+  /** User ID by workspace and mention, absent if there is no such user. */
+  private final Cache<String, Optional<String>> ids;
+  /** Mentions waiting for a lookup, by workspace. */
+  private final Map<String, Lookup> pending = new HashMap<>();
+  /** Time after which a workspace whose listing failed is listed again, by workspace. */
+  private final Map<String, Long> retryAt = new HashMap<>();
+  private final long retryMillis;
+  private ExecutorService executor;
+
+  @Inject
+  public SlackUsers(SlackPluginConfiguration configuration) {
+    this(
+        configuration.getUserCacheMaxEntries(),
+        configuration.getUserCacheTtl().toMilliseconds());
+  }
+
+  SlackUsers(int maxEntries, long ttlMillis) {
+    this(maxEntries, ttlMillis, RETRY_MILLIS);
+  }
+
+  SlackUsers(int maxEntries, long ttlMillis, long retryMillis) {
+    this.retryMillis = retryMillis;
+    this.ids =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
+  /**
+   * Replace the <code>@name</code> and <code>@email</code> mentions of a text with user IDs.
+   *
+   * @param api the workspace, or null if it has no Web API access
+   * @param text a text, may be null
+   * @return the text with every cached mention replaced
+   */
+  public String mention(SlackWebApi api, String text) {
+    if (api == null || text == null || text.indexOf('@') < 0) {
+      return text;
+    }
+    final Matcher matcher = MENTION.matcher(text);
+    StringBuffer result = null;
+    while (matcher.find()) {
+      final String user = matcher.group(1);
+      if (SPECIAL.contains(user)) {
+        continue;
+      }
+      final Optional<String> id = ids.getIfPresent(key(api, user));
+      if (id == null) {
+        enqueue(api, user);
+      } else if (id.isPresent()) {
+        if (result == null) {
+          result = new StringBuffer(text.length());
+        }
+        matcher.appendReplacement(result, Matcher.quoteReplacement("<@" + id.get() + '>'));
+      }
+    }
+    if (result == null) {
+      return text;
+    }
+    matcher.appendTail(result);
+    return result.toString();
+  }
+
+  private static String key(SlackWebApi api, String user) {
+    return api.getKey() + ' ' + user.toLowerCase(Locale.ENGLISH);
+  }
+
+  private synchronized void enqueue(SlackWebApi api, String user) {
+    Lookup lookup = pending.get(api.getKey());
+    if (lookup == null) {
+      final Long retry = retryAt.get(api.getKey());
+      if (retry != null && System.currentTimeMillis() < retry) {
+        return;
+      }
+      lookup = new Lookup(api);
+      pending.put(api.getKey(), lookup);
+      getExecutor().execute(() -> lookup(api.getKey()));
+    }
+    lookup.users.add(user);
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor =
+          Executors.newSingleThreadExecutor(
+              new ThreadFactoryBuilder().setNameFormat("slack-user-lookup").setDaemon(true).build());
+    }
+    return executor;
+  }
+
+  private void lookup(String workspace) {
+    final Lookup lookup;
+    synchronized (this) {
+      lookup = pending.remove(workspace);
+    }
+    final Map<String, String> found = new HashMap<>();
+    boolean complete = false;
+    try {
+      complete = list(lookup.api, found);
+    } catch (SlackClient.SlackClientException e) {
+      LOG.warn("Could not list Slack users, mentions are sent as they are: {}", e.getMessage());
+    }
+    synchronized (this) {
+      if (complete) {
+        retryAt.remove(workspace);
+      } else {
+        retryAt.put(workspace, System.currentTimeMillis() + retryMillis);
+      }
+    }
+    for (String user : lookup.users) {
+      final String id = found.get(user.toLowerCase(Locale.ENGLISH));
+      // A user missing from an incomplete listing may still exist
+      if (id != null || complete) {
+        ids.put(key(lookup.api, user), Optional.fromNullable(id));
+      }
+    }
+  }
+
+  /**
+   * Collect the IDs of all active users by user name, display name and email.
+   *
+   * @return false if there were more pages than are read
+   */
+  private static boolean list(SlackWebApi api, Map<String, String> found)
+      throws SlackClient.SlackClientException {
+    String cursor = "";
+    for (int page = 0; page < MAX_PAGES; page++) {
+      final JsonNode response =
+          api.call("users.list", ImmutableMap.of("limit", PAGE_SIZE, "cursor", cursor));
+      for (JsonNode user : response.path("members")) {
+        if (user.path("deleted").asBoolean()) {
+          continue;
+        }
+        final String id = user.path("id").asText();
+        final JsonNode profile = user.path("profile");
+        for (JsonNode name :
+            new JsonNode[] {user.get("name"), profile.get("display_name"), profile.get("email")}) {
+          if (name != null && !name.asText().isEmpty()) {
+            found.putIfAbsent(name.asText().toLowerCase(Locale.ENGLISH), id);
+          }
+        }
+      }
+      cursor = response.path("response_metadata").path("next_cursor").asText("");
+      if (cursor.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Wait until the lookups queued so far are done. */
+  void awaitLookups() throws InterruptedException, ExecutionException {
+    getExecutor().submit(() -> {}).get();
+  }
+
+  private static final class Lookup {
+    private final SlackWebApi api;
+    private final Set<String> users = new HashSet<>();
+
+    private Lookup(SlackWebApi api) {
+      this.api = api;
+    }
+  }
+}
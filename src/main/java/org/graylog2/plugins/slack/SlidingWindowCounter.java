@@ -0,0 +1,59 @@
+package org.graylog2.plugins.slack;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events in a sliding time window without locks. The window is split into buckets, each
+ * one an atomic long holding the bucket's time slot in the upper bits and its count in the lower
+ * bits, so a bucket of an earlier slot is reset and counted with one compare-and-set.
+ */
+final class SlidingWindowCounter {
+  private static final int COUNT_BITS = 24;
+  private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+  private final AtomicLongArray buckets;
+  private final long bucketMillis;
+
+  /**
+   * @param buckets number of buckets, the window slides by one bucket at a time
+   * @param windowMillis length of the window
+   */
+  SlidingWindowCounter(int buckets, long windowMillis) {
+    this.buckets = new AtomicLongArray(buckets);
+    this.bucketMillis = Math.max(1, windowMillis / buckets);
+  }
+
+  /** Count an event. */
+  void increment(long nowMillis) {
+    final long slot = nowMillis / bucketMillis;
+    final int index = (int) (slot % buckets.length());
+    while (true) {
+      final long value = buckets.get(index);
+      final long next;
+      if (value >>> COUNT_BITS == slot) {
+        if ((value & COUNT_MASK) == COUNT_MASK) {
+          return;
+        }
+        next = value + 1;
+      } else {
+        next = (slot << COUNT_BITS) | 1;
+      }
+      if (buckets.compareAndSet(index, value, next)) {
+        return;
+      }
+    }
+  }
+
+  /** Number of events in the window ending now. */
+  long sum(long nowMillis) {
+    final long slot = nowMillis / bucketMillis;
+    long sum = 0;
+    for (int i = 0; i < buckets.length(); i++) {
+      final long value = buckets.get(i);
+      if (slot - (value >>> COUNT_BITS) < buckets.length()) {
+        sum += value & COUNT_MASK;
+      }
+    }
+    return sum;
+  }
+}
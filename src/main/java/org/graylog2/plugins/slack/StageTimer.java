@@ -0,0 +1,68 @@
+package org.graylog2.plugins.slack;
+
+import java.util.Locale;
+
+/**
+ * Time spent in each stage of one Slack notification, measured with {@link System#nanoTime()}.
+ *
+ * <p>{@link #lap(Stage)} adds the time since the previous lap to a stage, so a stage may be
+ * entered several times. Instances are used by a single thread only.
+ */
+public class StageTimer {
+  public enum Stage {
+    /** Extracting backlog messages from an alert result. */
+    BACKLOG,
+    /** Templating and building the {@link SlackMessage}. */
+    RENDER,
+    /** Encoding the message as JSON or request parameters. */
+    ENCODE,
+    /** HTTP round trip to Slack. */
+    SEND;
+
+    private final String metricName = name().toLowerCase(Locale.ENGLISH);
+
+    public String metricName() {
+      return metricName;
+    }
+  }
+
+  private static final Stage[] STAGES = Stage.values();
+
+  private final long[] nanos = new long[STAGES.length];
+  private final long start;
+  private long mark;
+
+  public StageTimer() {
+    this.start = System.nanoTime();
+    this.mark = start;
+  }
+
+  /** Add the time elapsed since the previous lap to the given stage. */
+  public void lap(Stage stage) {
+    final long now = System.nanoTime();
+    nanos[stage.ordinal()] += now - mark;
+    mark = now;
+  }
+
+  public long getNanos(Stage stage) {
+    return nanos[stage.ordinal()];
+  }
+
+  /** Time from creation to the last lap. */
+  public long getTotalNanos() {
+    return mark - start;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    for (Stage stage : STAGES) {
+      appendMillis(sb, stage.metricName(), nanos[stage.ordinal()]).append(' ');
+    }
+    return appendMillis(sb, "total", getTotalNanos()).toString();
+  }
+
+  private static StringBuilder appendMillis(StringBuilder sb, String name, long nanos) {
+    return sb.append(name).append('=').append(nanos / 1000 / 1000.0).append("ms");
+  }
+}
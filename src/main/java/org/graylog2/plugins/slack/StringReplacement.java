@@ -34,6 +34,38 @@ public final class StringReplacement {
    */
   public static String replaceWithPrefix(
       String source, String prefix, Map<String, Object> valueMap) {
+    return replace(source, prefix, valueMap, false);
+  }
+
+  /**
+   * Like {@link #replace(String, Map)}, but values from the map are escaped with {@link
+   * MrkdwnEscaper}, so message fields can't add links or mentions. The template and default values
+   * are kept as they are.
+   *
+   * @param source the source text containing the variables to substitute, null returns null
+   * @param valueMap the map with the values, may be null
+   * @return the result of the replace operation
+   */
+  public static String replaceEscaped(String source, Map<String, Object> valueMap) {
+    return replace(source, null, valueMap, true);
+  }
+
+  /**
+   * Like {@link #replaceWithPrefix(String, String, Map)}, but values from the map are escaped with
+   * {@link MrkdwnEscaper}.
+   *
+   * @param source the source text containing the variables to substitute, null returns null
+   * @param prefix prefix string
+   * @param valueMap the map with the values, may be null
+   * @return the result of the replace operation
+   */
+  public static String replaceEscapedWithPrefix(
+      String source, String prefix, Map<String, Object> valueMap) {
+    return replace(source, prefix, valueMap, true);
+  }
+
+  private static String replace(
+      String source, String prefix, Map<String, Object> valueMap, boolean escape) {
     if (source == null || valueMap == null) return source;
     StringBuilder sb = new StringBuilder();
     char[] strArray = source.toCharArray();
@@ -45,11 +77,13 @@ public final class StringReplacement {
         while (strArray[i] != '}') ++i;
         String[] exprs = findDefaultValue(source.substring(begin, i++));
         Object value = valueMap.get(exprs[0]);
+        final boolean fromMap = value != null;
         if (value == null && exprs.length > 1) value = exprs[1];
         if (value == null || "".equals(value)) sb.append("");
         else {
           if (prefix != null) sb.append(prefix);
-          sb.append(value);
+          if (escape && fromMap) MrkdwnEscaper.append(sb, value.toString());
+          else sb.append(value);
         }
       } else {
         sb.append(strArray[i]);
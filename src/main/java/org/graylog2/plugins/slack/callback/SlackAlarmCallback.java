@@ -2,11 +2,15 @@ package org.graylog2.plugins.slack.callback;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
-import java.util.Arrays;
+import com.google.inject.Inject;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.MessageSummary;
 import org.graylog2.plugin.alarms.AlertCondition;
@@ -17,18 +21,94 @@ import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.configuration.ConfigurationException;
 import org.graylog2.plugin.configuration.ConfigurationRequest;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugins.slack.FieldExtractor;
+import org.graylog2.plugins.slack.MrkdwnEscaper;
+import org.graylog2.plugins.slack.SlackAlertBudget;
 import org.graylog2.plugins.slack.SlackClient;
+import org.graylog2.plugins.slack.SlackConnectionWarmer;
+import org.graylog2.plugins.slack.SlackIncidents;
 import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackMetrics;
 import org.graylog2.plugins.slack.SlackPluginBase;
+import org.graylog2.plugins.slack.SlackPluginConfiguration;
+import org.graylog2.plugins.slack.SlackResponse;
+import org.graylog2.plugins.slack.SlackStatistics;
+import org.graylog2.plugins.slack.SlackThreads;
+import org.graylog2.plugins.slack.SlackTransport;
+import org.graylog2.plugins.slack.SlackTransports;
+import org.graylog2.plugins.slack.SlackUsers;
+import org.graylog2.plugins.slack.StageTimer;
 import org.graylog2.plugins.slack.StringReplacement;
+import org.graylog2.plugins.slack.transport.SlackWebApi;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /** 
  * Call by Graylog when Alarm was occured. 
  */
 public class SlackAlarmCallback extends SlackPluginBase implements AlarmCallback {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackAlarmCallback.class);
+  /** Characters of a backlog message shown when it is uploaded as a snippet. */
+  private static final int SNIPPET_PREVIEW_LENGTH = 200;
+
+  private final SlackStatistics statistics;
+  private final SlackConnectionWarmer warmer;
+  private final SlackIncidents incidents;
+  private final SlackThreads threads;
+  private final SlackUsers users;
+  private final SlackAlertBudget budget;
+  private final SlackTransport.Factory transports;
   private Configuration configuration;
+  /** Hash of the webhook, token and channel, used in keys instead of the token. */
+  private String destinationId;
+  /** Names the metrics of this callback, which Graylog creates anew for every alert. */
+  private String metricsInstance;
+  private SlackClient client;
+  private boolean warmUp;
+  private BacklogRenderer backlogRenderer;
+  private SlackWebApi api;
+  private int snippetThreshold;
+
+  @Inject
+  public SlackAlarmCallback(
+      SlackStatistics statistics,
+      SlackConnectionWarmer warmer,
+      SlackIncidents incidents,
+      SlackThreads threads,
+      SlackUsers users,
+      SlackAlertBudget budget,
+      SlackTransport.Factory transports) {
+    this.statistics = statistics;
+    this.warmer = warmer;
+    this.incidents = incidents;
+    this.threads = threads;
+    this.users = users;
+    this.budget = budget;
+    this.transports = transports;
+  }
+
+  public SlackAlarmCallback(
+      SlackStatistics statistics,
+      SlackConnectionWarmer warmer,
+      SlackTransport.Factory transports) {
+    this(
+        statistics,
+        warmer,
+        new SlackIncidents(new SlackPluginConfiguration()),
+        new SlackThreads(new SlackPluginConfiguration()),
+        new SlackUsers(new SlackPluginConfiguration()),
+        new SlackAlertBudget(new SlackPluginConfiguration()),
+        transports);
+  }
+
+  public SlackAlarmCallback() {
+    this(
+        new SlackStatistics(new MetricRegistry()),
+        new SlackConnectionWarmer(new SlackPluginConfiguration()),
+        new SlackTransports(new SlackPluginConfiguration()));
+  }
 
   @Override
   public void initialize(final Configuration config) throws AlarmCallbackConfigurationException {
@@ -38,152 +118,349 @@ public class SlackAlarmCallback extends SlackPluginBase implements AlarmCallback
     } catch (ConfigurationException e) {
       throw new AlarmCallbackConfigurationException("Configuration error. " + e.getMessage());
     }
+    if (config.stringIsSet(CK_INCIDENT_KEY) && config.getInt(CK_THREAD_WINDOW, 0) > 0) {
+      throw new AlarmCallbackConfigurationException(
+          "Configuration error. Repeats can't be grouped and threaded at the same time.");
+    }
+    this.destinationId = destinationId(config);
+    this.metricsInstance = configurationId(config);
+    this.client = createClient(config);
+    this.api = createWebApi(config);
+    // Snippets are uploaded to the alert's thread, edited incidents have none
+    this.snippetThreshold =
+        api == null || config.stringIsSet(CK_INCIDENT_KEY)
+            ? 0
+            : config.getInt(CK_SNIPPET_THRESHOLD, 0);
+    this.backlogRenderer = new BacklogRenderer(config);
+    this.warmUp = config.getBoolean(CK_WARM_UP);
+    if (warmUp) {
+      warmer.keepWarm(client);
+    }
+  }
+
+  /**
+   * Create a Slack client for this callback. Called once from {@link #initialize}.
+   *
+   * @param config a callback configuration
+   * @return a Slack client
+   */
+  protected SlackClient createClient(Configuration config) {
+    return new SlackClient(transports.create(config));
+  }
+
+  /**
+   * Create the Web API access of this callback, to look up users and upload snippets. Called once
+   * from {@link #initialize}.
+   *
+   * @param config a callback configuration
+   * @return the workspace, or null without a Slack token
+   */
+  protected SlackWebApi createWebApi(Configuration config) {
+    return webApi(config);
   }
 
   @Override
   public void call(Stream stream, AlertCondition.CheckResult result) throws AlarmCallbackException {
-    final SlackClient client = new SlackClient(configuration);
+    final StageTimer timer = new StageTimer();
+    final SlackMetrics metrics =
+        statistics.get(SlackAlarmCallback.class, stream.getId(), metricsInstance);
+    if (!budget.tryAcquire()) {
+      budget.suppress(
+          destinationId,
+          client,
+          new SlackMessage(
+              null,
+              configuration.getString(CK_CHANNEL),
+              configuration.getString(CK_USER_NAME),
+              configuration.getString(CK_MESSAGE_ICON),
+              configuration.getBoolean(CK_LINK_NAMES)),
+          stream.getTitle());
+      metrics.markSuppressed();
+      return;
+    }
     final String color = configuration.getString(CK_COLOR);
-    final String footerIconUrl = configuration.getString(CK_FOOTER_ICON_URL);
-    final String footerText = configuration.getString(CK_FOOTER_TEXT);
-    final String tsField = configuration.getString(CK_FOOTER_TS_FIELD);
-    final String customFields = configuration.getString(CK_FIELDS);
-    final boolean isAcknowledge = configuration.getBoolean(CK_ACKNOWLEDGE);
-    final String graylogUri = configuration.getString(CK_GRAYLOG2_URL);
-    final boolean isPreFormat = configuration.getBoolean(CK_PREFORMAT);
+    final long threadWindow = TimeUnit.MINUTES.toMillis(configuration.getInt(CK_THREAD_WINDOW, 0));
+    final String threadKey = threadWindow > 0 ? threadKey(stream, result) : null;
+    final SlackThreads.Parent parent =
+        threadKey == null ? null : threads.get(threadKey, threadWindow);
     // Create Message
     SlackMessage message =
         new SlackMessage(
             buildMessage(stream, result),
-            configuration.getString(CK_CHANNEL),
+            parent == null ? configuration.getString(CK_CHANNEL) : parent.getChannel(),
             configuration.getString(CK_USER_NAME),
             configuration.getString(CK_MESSAGE_ICON),
             configuration.getBoolean(CK_LINK_NAMES));
+    if (parent != null) {
+      message.threadTs = parent.getTs();
+    }
 
-    // Create Attachment for Stream section
-    if (configuration.getBoolean(CK_ADD_STREAM_INFO)) {
+    // Create Attachment for Stream section, replies leave it to the first alert of their thread
+    if (parent == null && configuration.getBoolean(CK_ADD_STREAM_INFO)) {
       SlackMessage.Attachment attachment = message.addAttachment("Stream", color, null, null, null);
       attachment.addField(new SlackMessage.AttachmentField("Stream ID", stream.getId(), true));
       attachment.addField(
-          new SlackMessage.AttachmentField("Stream Title", stream.getTitle(), false));
+          new SlackMessage.AttachmentField(
+              "Stream Title", MrkdwnEscaper.escape(stream.getTitle()), false));
       attachment.addField(
-          new SlackMessage.AttachmentField("Stream Description", stream.getDescription(), false));
+          new SlackMessage.AttachmentField(
+              "Stream Description", MrkdwnEscaper.escape(stream.getDescription()), false));
     }
 
     // Create Attachment for Backlog and Fields section
-    final List<Message> backlogItems = getAlarmBacklog(result);
-    int count = configuration.getInt(CK_ADD_BLITEMS);
-    if (count > 0) {
-      final int blSize = backlogItems.size();
-      if (blSize < count) {
-        count = blSize;
-      }
-      boolean shortMode = configuration.getBoolean(CK_SHORT_MODE);
-      final String[] fields;
-      if (!isNullOrEmpty(customFields)) {
-        fields = customFields.split(",");
-      } else {
-        fields = new String[0];
-      }
-      for (int i = 0; i < count; i++) {
-        Message backlogItem = backlogItems.get(i);
-        String footer = null;
-        Long ts = null;
-        if (!isNullOrEmpty(footerText)) {
-          footer = StringReplacement.replace(footerText, backlogItem.getFields()).trim();
-          if (!isNullOrEmpty(graylogUri))
-            footer = new StringBuilder("<").append(buildMessageLink(graylogUri, backlogItem)).append('|').append(footer).append('>').toString();
-          try {
-            DateTime timestamp = null;
-            if ("timestamp".equals(tsField)) { // timestamp is reserved field in org.graylog2.notifications.NotificationImpl
-              timestamp = backlogItem.getTimestamp();
-            } else {
-              Object value = backlogItem.getField(tsField);
-              if (value instanceof DateTime) {
-                timestamp = (DateTime) value;
-              } else {
-                timestamp = new DateTime(value, DateTimeZone.UTC);
-              }
-            }
-            ts = timestamp.getMillis() / 1000;
-          } catch (NullPointerException | IllegalArgumentException e) {
-            // ignore
-          }
-        }
-        List<SlackMessage.Action> actionList = null;
-        if (isAcknowledge) {
-          actionList =
-              Lists.newArrayList(
-                  new SlackMessage.Action("acknowledge", "Acknowledge", "true", "primary"),
-                  new SlackMessage.Action("decline", "It is not me!!", "true", "danger"));
-        }
-        StringBuilder backLogMessage = new StringBuilder(backlogItem.getMessage());
-        if (isPreFormat)
-          backLogMessage.insert(0, "```").append("```");
-        final SlackMessage.Attachment attachment =
-            message.addAttachment(
-                backLogMessage.toString(),
-                color,
-                footer,
-                footerIconUrl,
-                ts,
-                backlogItem.getId(),
-                actionList);
-        if (isPreFormat)
-          attachment.setMarkdownIn("text");
-        // Add custom fields from backlog list
-        if (fields.length > 0) {
-          Arrays.stream(fields)
-              .map(String::trim)
-              .forEach(f -> addField(backlogItem, f, shortMode, attachment));
-        }
-      }
+    timer.lap(StageTimer.Stage.RENDER);
+    final List<MessageSummary> backlogItems =
+        getAlarmBacklog(result, configuration.getInt(CK_ADD_BLITEMS));
+    timer.lap(StageTimer.Stage.BACKLOG);
+    if (!backlogItems.isEmpty()) {
+      // Attachments are independent of each other. A parallel stream renders them on the common
+      // fork-join pool and collects them in backlog order.
+      final int parallelThreshold =
+          configuration.getInt(CK_PARALLEL_THRESHOLD, DEFAULT_PARALLEL_THRESHOLD);
+      final boolean parallel = parallelThreshold > 0 && backlogItems.size() >= parallelThreshold;
+      final List<SlackMessage.Attachment> attachments =
+          (parallel ? backlogItems.parallelStream() : backlogItems.stream())
+              .map(backlogRenderer::render)
+              .collect(Collectors.toList());
+      attachments.forEach(message::addAttachment);
     }
+    metrics.markRendered();
+    timer.lap(StageTimer.Stage.RENDER);
+
     // Send message to Slack
     try {
-      client.send(message);
+      final String incidentKey = configuration.getString(CK_INCIDENT_KEY);
+      if (isNullOrEmpty(incidentKey)) {
+        final SlackResponse response = client.send(message, metrics, timer);
+        if (threadKey != null && parent == null) {
+          threads.start(threadKey, response);
+        }
+        uploadSnippets(backlogItems, message, response);
+      } else {
+        incidents.send(incidentKey(stream, result, incidentKey), client, message, metrics, timer);
+      }
     } catch (SlackClient.SlackClientException e) {
+      metrics.markDropped(e);
       throw new RuntimeException("Could not send message to Slack.", e);
+    } finally {
+      metrics.record(timer, configuration.getInt(CK_SLOW_THRESHOLD, 0));
+      if (warmUp) {
+        warmer.keepWarm(client);
+      }
     }
   }
 
-  /** 
-   * Collect all backlog from Alert result. 
+  /** Upload the backlog messages which were too long to be sent inline to the alert's thread. */
+  private void uploadSnippets(
+      List<MessageSummary> backlogItems, SlackMessage message, SlackResponse response) {
+    if (snippetThreshold <= 0 || response.getTs() == null) {
+      return;
+    }
+    final String threadTs = message.threadTs == null ? response.getTs() : message.threadTs;
+    for (MessageSummary backlogItem : backlogItems) {
+      final String text = backlogItem.getRawMessage().getMessage();
+      if (text == null || text.length() <= snippetThreshold) {
+        continue;
+      }
+      try {
+        api.upload(
+            ImmutableMap.of(
+                "channels", response.getChannel(),
+                "thread_ts", threadTs,
+                "filetype", "text",
+                "title", "Message " + backlogItem.getId()),
+            backlogItem.getId() + ".txt",
+            text);
+      } catch (SlackClient.SlackClientException e) {
+        LOG.warn("Could not upload message {} to Slack: {}", backlogItem.getId(), e.getMessage());
+      }
+    }
+  }
+
+  private String threadKey(Stream stream, AlertCondition.CheckResult result) {
+    return SlackAlarmCallback.class.getSimpleName()
+        + '|'
+        + stream.getId()
+        + '|'
+        + result.getTriggeredCondition().getId()
+        + '|'
+        + destinationId;
+  }
+
+  private String incidentKey(Stream stream, AlertCondition.CheckResult result, String template) {
+    final List<MessageSummary> matchingMessages = result.getMatchingMessages();
+    final Map<String, Object> fields =
+        matchingMessages == null || matchingMessages.isEmpty()
+            ? Collections.emptyMap()
+            : matchingMessages.get(0).getFields();
+    return SlackAlarmCallback.class.getSimpleName()
+        + '|'
+        + stream.getId()
+        + '|'
+        + result.getTriggeredCondition().getId()
+        + '|'
+        + destinationId
+        + '|'
+        + StringReplacement.replace(template, fields);
+  }
+
+  /**
+   * Get the backlog items of an alert result which will be rendered. Returns a view of the matching
+   * messages, so nothing is copied and messages beyond the limit are never touched. Each summary
+   * carries the index of its message, which is needed for the message link.
+   *
+   * @param result a Graylog alert condition result
+   * @param limit maximum number of backlog items to be rendered
+   * @return at most <code>limit</code> message summaries from the backlog
    */
-  protected List<Message> getAlarmBacklog(AlertCondition.CheckResult result) {
+  protected List<MessageSummary> getAlarmBacklog(AlertCondition.CheckResult result, int limit) {
     final AlertCondition alertCondition = result.getTriggeredCondition();
     final List<MessageSummary> matchingMessages = result.getMatchingMessages();
 
-    final int effectiveBacklogSize = Math.min(alertCondition.getBacklog(), matchingMessages.size());
+    final int effectiveBacklogSize =
+        Math.min(limit, Math.min(alertCondition.getBacklog(), matchingMessages.size()));
 
-    if (effectiveBacklogSize == 0) {
+    if (effectiveBacklogSize <= 0) {
       return Collections.emptyList();
     }
 
-    final List<MessageSummary> backlogSummaries = matchingMessages.subList(0, effectiveBacklogSize);
-    final List<Message> backlog = Lists.newArrayListWithCapacity(effectiveBacklogSize);
-    for (MessageSummary messageSummary : backlogSummaries) {
-      Message message = messageSummary.getRawMessage();
-      message.addField("gl2_document_index", messageSummary.getIndex());
-      backlog.add(message);
-    }
-
-    return backlog;
+    return matchingMessages.subList(0, effectiveBacklogSize);
   }
 
   /**
-   * Shortcut method to add a backlog field into Slack attachment.
-   *
-   * @param message Graylog Message
-   * @param fieldName field in backlog to be added
-   * @param shortMode true to use Slack attachment short mode
-   * @param attachment a Slack attachment object
+   * Renders one backlog item into a Slack attachment. Holds no mutable state, so attachments may be
+   * rendered concurrently.
    */
-  private void addField(
-      Message message, String fieldName, boolean shortMode, SlackMessage.Attachment attachment) {
-    Object value = message.getField(fieldName);
-    if (value != null) {
-      attachment.addField(new SlackMessage.AttachmentField(fieldName, value.toString(), shortMode));
+  private class BacklogRenderer {
+    private final String color;
+    private final String footerIconUrl;
+    private final String footerText;
+    private final boolean footerHasVariables;
+    private final String tsField;
+    private final String graylogUri;
+    private final boolean isAcknowledge;
+    private final boolean isPreFormat;
+    private final boolean shortMode;
+    private final FieldExtractor[] fields;
+
+    BacklogRenderer(Configuration config) {
+      this.color = config.getString(CK_COLOR);
+      this.footerIconUrl = config.getString(CK_FOOTER_ICON_URL);
+      this.footerText = config.getString(CK_FOOTER_TEXT);
+      this.footerHasVariables = footerText != null && footerText.contains("${");
+      this.tsField = config.getString(CK_FOOTER_TS_FIELD);
+      this.graylogUri = config.getString(CK_GRAYLOG2_URL);
+      this.isAcknowledge = config.getBoolean(CK_ACKNOWLEDGE);
+      this.isPreFormat = config.getBoolean(CK_PREFORMAT);
+      this.shortMode = config.getBoolean(CK_SHORT_MODE);
+      this.fields = FieldExtractor.compile(config.getString(CK_FIELDS));
+    }
+
+    SlackMessage.Attachment render(MessageSummary backlogSummary) {
+      final Message backlogItem = backlogSummary.getRawMessage();
+      String footer = null;
+      Long ts = null;
+      if (!isNullOrEmpty(footerText)) {
+        if (!isNullOrEmpty(graylogUri)) {
+          // field values must not end the link or start another one
+          final StringBuilder link =
+              new StringBuilder("<")
+                  .append(
+                      buildMessageLink(
+                          graylogUri, backlogSummary.getIndex(), backlogItem.getId()))
+                  .append('|');
+          footer = MrkdwnEscaper.append(link, footer(backlogItem, false)).append('>').toString();
+        } else {
+          // field values must not add links or mentions, the template may
+          footer = footer(backlogItem, true);
+        }
+        try {
+          DateTime timestamp = null;
+          if ("timestamp".equals(tsField)) { // timestamp is reserved field in org.graylog2.notifications.NotificationImpl
+            timestamp = backlogItem.getTimestamp();
+          } else {
+            Object value = backlogItem.getField(tsField);
+            if (value instanceof DateTime) {
+              timestamp = (DateTime) value;
+            } else {
+              timestamp = new DateTime(value, DateTimeZone.UTC);
+            }
+          }
+          ts = timestamp.getMillis() / 1000;
+        } catch (NullPointerException | IllegalArgumentException e) {
+          // ignore
+        }
+      }
+      List<SlackMessage.Action> actionList = null;
+      if (isAcknowledge) {
+        actionList =
+            Lists.newArrayList(
+                new SlackMessage.Action("acknowledge", "Acknowledge", "true", "primary"),
+                new SlackMessage.Action("decline", "It is not me!!", "true", "danger"));
+      }
+      final String message = backlogItem.getMessage();
+      final boolean snippet =
+          snippetThreshold > 0 && message != null && message.length() > snippetThreshold;
+      final StringBuilder backLogMessage =
+          new StringBuilder(message == null ? 16 : message.length() + 16);
+      if (isPreFormat)
+        backLogMessage.append("```");
+      MrkdwnEscaper.append(backLogMessage, snippet ? preview(message) : message);
+      if (isPreFormat)
+        backLogMessage.append("```");
+      if (snippet) {
+        backLogMessage
+            .append("\n_Full message (")
+            .append(message.length())
+            .append(" characters) uploaded to the thread_");
+      }
+      final String text = backLogMessage.toString();
+      final SlackMessage.Attachment attachment =
+          new SlackMessage.Attachment(
+              text,
+              text,
+              null,
+              color,
+              footer,
+              footerIconUrl,
+              ts,
+              Lists.newArrayList(),
+              backlogItem.getId(),
+              actionList,
+              null);
+      if (isPreFormat)
+        attachment.setMarkdownIn("text");
+      // Add custom fields from backlog list
+      for (FieldExtractor field : fields) {
+        final String value = field.extract(backlogItem);
+        if (value != null) {
+          attachment.addField(
+              new SlackMessage.AttachmentField(
+                  field.getName(), MrkdwnEscaper.escape(value), shortMode));
+        }
+      }
+      return attachment;
+    }
+
+    private String footer(Message backlogItem, boolean escapeValues) {
+      if (!footerHasVariables) {
+        // Message#getFields() copies all fields, only worth it if the footer refers to them
+        return footerText.trim();
+      }
+      final Map<String, Object> fields = backlogItem.getFields();
+      return (escapeValues
+              ? StringReplacement.replaceEscaped(footerText, fields)
+              : StringReplacement.replace(footerText, fields))
+          .trim();
+    }
+
+    /** The first line of a message, at most {@link #SNIPPET_PREVIEW_LENGTH} characters. */
+    private String preview(String message) {
+      int end = message.indexOf('\n');
+      if (end < 0 || end > SNIPPET_PREVIEW_LENGTH) {
+        end = Math.min(message.length(), SNIPPET_PREVIEW_LENGTH);
+      }
+      return message.substring(0, end) + " \u2026";
     }
   }
 
@@ -202,31 +479,27 @@ public class SlackAlarmCallback extends SlackPluginBase implements AlarmCallback
     if (!isNullOrEmpty(notifyUser)) {
       List<MessageSummary> messageList = result.getMatchingMessages();
       if (messageList.size() > 0) {
-        for (MessageSummary messageSummary : result.getMatchingMessages()) {
-          notifyUser =
-              StringReplacement.replaceWithPrefix(
-                  notifyUser, "@", messageSummary.getRawMessage().getFields());
-        }
+        // The first message replaces every variable, so later messages would not change anything
+        notifyUser =
+            StringReplacement.replaceEscapedWithPrefix(
+                notifyUser, "@", messageList.get(0).getRawMessage().getFields());
       } else {
         notifyUser = StringReplacement.replace(notifyUser, Collections.emptyMap());
       }
-      message.append(notifyUser.trim()).append(' ');
+      message.append(users.mention(api, notifyUser.trim())).append(' ');
     }
     if (!isNullOrEmpty(graylogUri)) {
-      message
-          .append(" <")
-          .append(buildStreamLink(graylogUri, stream))
-          .append('|')
-          .append(stream.getTitle())
-          .append("> ");
+      message.append(" <").append(buildStreamLink(graylogUri, stream)).append('|');
+      MrkdwnEscaper.append(message, stream.getTitle()).append("> ");
     } else {
-      message.append(" _").append(stream.getTitle()).append("_ ");
+      message.append(" _");
+      MrkdwnEscaper.append(message, stream.getTitle()).append("_ ");
     }
     // Original Graylog message is too redundant. Try to make it short but it must compatible with all 3 Alerts type
     // message.append(result.getResultDescription());
     String description = result.getResultDescription();
     if (description != null) {
-      message.append(description.replaceFirst("Stream", "").trim());
+      MrkdwnEscaper.append(message, description.replaceFirst("Stream", "").trim());
     }
     return message.toString();
   }
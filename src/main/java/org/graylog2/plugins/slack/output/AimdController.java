@@ -0,0 +1,80 @@
+package org.graylog2.plugins.slack.output;
+
+/**
+ * Additive-increase/multiplicative-decrease control of the batch size and the number of concurrent
+ * posts of a {@link SlackDeliveryQueue}.
+ *
+ * <p>Every healthy response grows both limits by <code>1 / concurrency</code>, so they grow by
+ * about one per round of concurrent posts. A rate limit, an error or a response slower than the
+ * target latency halves both. Responses to posts sent before the last decrease are signals of the
+ * same congestion and do not decrease again.
+ */
+final class AimdController {
+  private static final double DECREASE_FACTOR = 0.5;
+
+  private final int maxBatchSize;
+  private final int maxConcurrency;
+  private final long targetLatencyNanos;
+
+  private double batchSize = 1;
+  private double concurrency = 1;
+  private boolean decreased;
+  private long lastDecreaseNanos;
+
+  /**
+   * @param maxBatchSize upper limit of messages per post
+   * @param maxConcurrency upper limit of concurrent posts
+   * @param targetLatencyNanos slower responses decrease the limits
+   */
+  AimdController(int maxBatchSize, int maxConcurrency, long targetLatencyNanos) {
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.maxConcurrency = Math.max(1, maxConcurrency);
+    this.targetLatencyNanos = targetLatencyNanos;
+  }
+
+  /**
+   * Slack accepted a post.
+   *
+   * @param startNanos {@link System#nanoTime()} when the post was sent
+   * @param nowNanos {@link System#nanoTime()} when the response arrived
+   */
+  synchronized void onSuccess(long startNanos, long nowNanos) {
+    if (nowNanos - startNanos > targetLatencyNanos) {
+      decrease(startNanos, nowNanos);
+      return;
+    }
+    final double step = 1 / concurrency;
+    batchSize = Math.min(maxBatchSize, batchSize + step);
+    concurrency = Math.min(maxConcurrency, concurrency + step);
+  }
+
+  /**
+   * A post was rate limited or failed with a temporary error.
+   *
+   * @param startNanos {@link System#nanoTime()} when the post was sent
+   * @param nowNanos {@link System#nanoTime()} when the response arrived
+   */
+  synchronized void onBackoff(long startNanos, long nowNanos) {
+    decrease(startNanos, nowNanos);
+  }
+
+  private void decrease(long startNanos, long nowNanos) {
+    if (decreased && startNanos - lastDecreaseNanos < 0) {
+      return;
+    }
+    batchSize = Math.max(1, batchSize * DECREASE_FACTOR);
+    concurrency = Math.max(1, concurrency * DECREASE_FACTOR);
+    decreased = true;
+    lastDecreaseNanos = nowNanos;
+  }
+
+  /** Current number of messages per post. */
+  synchronized int getBatchSize() {
+    return (int) batchSize;
+  }
+
+  /** Current number of concurrent posts. */
+  synchronized int getConcurrency() {
+    return (int) concurrency;
+  }
+}
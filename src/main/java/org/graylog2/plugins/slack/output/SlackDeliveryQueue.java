@@ -0,0 +1,399 @@
+package org.graylog2.plugins.slack.output;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.graylog2.plugins.slack.SlackClient;
+import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackResponse;
+import org.graylog2.plugins.slack.StageTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of rendered messages of one {@link SlackMessageOutput}, delivered in batches.
+ *
+ * <p>A dispatcher thread takes as many queued messages as the {@link AimdController} allows and
+ * posts them as one Slack message, with the texts joined and the attachments appended. Up to the
+ * controller's concurrency of posts are in flight at a time. Rate limited and temporarily failed
+ * posts are retried before new messages, after the rate-limit wait has passed.
+ *
+ * <p>With a maximum age, messages older than that when they are taken from the queue, e.g. after
+ * a long rate-limit wait, are skipped, so fresh messages are sent first. Their age is counted from
+ * their Graylog timestamp, or from when they were queued if that is earlier. Once the queue is
+ * empty, one summary of the skipped messages is posted instead.
+ */
+final class SlackDeliveryQueue {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackDeliveryQueue.class);
+
+  static final int DEFAULT_CAPACITY = 1000;
+  /** Slack rejects messages with more attachments. */
+  static final int MAX_ATTACHMENTS = 100;
+
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long POLL_MILLIS = 100;
+  private static final long STOP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+  private final SlackClient client;
+  private final SlackMetrics metrics;
+  private final AimdController controller;
+  private final long slowThresholdMillis;
+  private final long maxAgeMillis;
+  private final BlockingQueue<Queued> queue;
+  private final Deque<Batch> retries = new ConcurrentLinkedDeque<>();
+  private final ExecutorService senders;
+  private final Thread dispatcher;
+
+  private final Object lock = new Object();
+  private int inFlight; // guarded by lock
+  private volatile boolean running = true;
+  /** Stale messages skipped since the last summary, and one of them. Only used by the dispatcher. */
+  private int stale;
+  private SlackMessage staleTemplate;
+
+  /**
+   * @param client client to post with
+   * @param metrics metrics of the output, the queue depth and the controller state are added
+   * @param controller batch size and concurrency control
+   * @param maxConcurrency number of sender threads, the upper limit of the controller
+   * @param capacity maximum number of queued messages
+   * @param slowThresholdMillis log threshold of slow posts in milliseconds, 0 to never log
+   * @param maxAgeMillis age after which messages are skipped, 0 to send every message
+   */
+  SlackDeliveryQueue(
+      SlackClient client,
+      SlackMetrics metrics,
+      AimdController controller,
+      int maxConcurrency,
+      int capacity,
+      long slowThresholdMillis,
+      long maxAgeMillis) {
+    this.client = client;
+    this.metrics = metrics;
+    this.controller = controller;
+    this.slowThresholdMillis = slowThresholdMillis;
+    this.maxAgeMillis = maxAgeMillis;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.senders =
+        Executors.newFixedThreadPool(
+            Math.max(1, maxConcurrency),
+            new ThreadFactoryBuilder()
+                .setNameFormat("slack-output-sender-" + metrics.getId() + "-%d")
+                .setDaemon(true)
+                .build());
+    this.dispatcher = new Thread(this::dispatch, "slack-output-dispatcher-" + metrics.getId());
+    this.dispatcher.setDaemon(true);
+
+    metrics.gauge(SlackMetrics.QUEUE_DEPTH, queue::size);
+    metrics.gauge(SlackMetrics.BATCH_SIZE, controller::getBatchSize);
+    metrics.gauge(SlackMetrics.CONCURRENCY, controller::getConcurrency);
+    dispatcher.start();
+  }
+
+  /**
+   * Queue a message for delivery.
+   *
+   * @param message the message
+   * @param timestampMillis Graylog timestamp of the message
+   * @return false if the queue is full or stopped, and the message was dropped
+   */
+  boolean offer(SlackMessage message, long timestampMillis) {
+    if (!running) {
+      metrics.markDropped(new IllegalStateException("Slack output stopped"));
+      return false;
+    }
+    if (!queue.offer(
+        new Queued(message, Math.min(timestampMillis, System.currentTimeMillis())))) {
+      metrics.markDropped(new IllegalStateException("Slack delivery queue is full"));
+      return false;
+    }
+    return true;
+  }
+
+  int size() {
+    return queue.size();
+  }
+
+  /** Stop accepting messages, and wait until the queued messages are delivered or dropped. */
+  void stop() {
+    running = false;
+    try {
+      dispatcher.join(STOP_TIMEOUT_MILLIS);
+      if (dispatcher.isAlive()) {
+        dispatcher.interrupt();
+        dispatcher.join();
+      }
+    } catch (InterruptedException e) {
+      dispatcher.interrupt();
+      Thread.currentThread().interrupt();
+    } finally {
+      senders.shutdown();
+    }
+  }
+
+  private void dispatch() {
+    try {
+      while (running || !queue.isEmpty() || isPosting()) {
+        awaitCapacity();
+        final long wait = metrics.getRateLimitWaitMillis();
+        if (wait > 0) {
+          Thread.sleep(wait);
+        }
+        Batch batch = nextRetry();
+        if (batch == null) {
+          batch = nextBatch();
+        }
+        if (batch == null) {
+          batch = staleSummary();
+        }
+        if (batch != null) {
+          post(batch);
+        }
+      }
+    } catch (InterruptedException e) {
+      // fall through, dropping what was not sent
+    }
+    // Messages offered while stopping, and retries of posts the interrupted loop did not wait for
+    final IllegalStateException stopped = new IllegalStateException("Slack output stopped");
+    Batch batch;
+    while ((batch = retries.poll()) != null) {
+      drop(batch, stopped);
+    }
+    final List<Queued> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    if (!remaining.isEmpty()) {
+      drop(new Batch(null, remaining.size(), 0), stopped);
+    }
+  }
+
+  /**
+   * Whether posts are in flight or waiting for a retry. Retries are added under the same lock as
+   * the post that failed leaves the flight, so a batch is always counted by one of them.
+   */
+  private boolean isPosting() {
+    synchronized (lock) {
+      return inFlight > 0 || !retries.isEmpty();
+    }
+  }
+
+  private void awaitCapacity() throws InterruptedException {
+    synchronized (lock) {
+      while (inFlight >= controller.getConcurrency()) {
+        lock.wait(POLL_MILLIS);
+      }
+    }
+  }
+
+  /** Take the next retry which is not stale. Only called by the dispatcher. */
+  private Batch nextRetry() {
+    Batch batch;
+    while ((batch = retries.poll()) != null && isStale(batch.timestampMillis)) {
+      skip(batch.message, batch.size);
+    }
+    return batch;
+  }
+
+  /** Take up to the current batch size of messages. Only called by the dispatcher. */
+  private Batch nextBatch() throws InterruptedException {
+    Queued first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+    while (first != null && isStale(first.timestampMillis)) {
+      skip(first.message, 1);
+      first = queue.poll();
+    }
+    if (first == null) {
+      return null;
+    }
+    final int batchSize = controller.getBatchSize();
+    if (batchSize == 1) {
+      return new Batch(first.message, 1, first.timestampMillis);
+    }
+    final List<SlackMessage> messages = new ArrayList<>(batchSize);
+    messages.add(first.message);
+    int attachments = attachments(first.message);
+    long timestampMillis = first.timestampMillis;
+    Queued next;
+    while (messages.size() < batchSize
+        && (next = queue.peek()) != null
+        && attachments + attachments(next.message) <= MAX_ATTACHMENTS) {
+      queue.poll();
+      if (isStale(next.timestampMillis)) {
+        skip(next.message, 1);
+        continue;
+      }
+      messages.add(next.message);
+      attachments += attachments(next.message);
+      timestampMillis = Math.min(timestampMillis, next.timestampMillis);
+    }
+    return new Batch(merge(messages), messages.size(), timestampMillis);
+  }
+
+  private boolean isStale(long timestampMillis) {
+    return maxAgeMillis > 0 && System.currentTimeMillis() - timestampMillis > maxAgeMillis;
+  }
+
+  private void skip(SlackMessage message, int size) {
+    stale += size;
+    staleTemplate = message;
+    for (int i = 0; i < size; i++) {
+      metrics.markStale();
+    }
+  }
+
+  /**
+   * Summary of the skipped stale messages, once nothing fresh is left to send. Only called by the
+   * dispatcher.
+   */
+  private Batch staleSummary() {
+    if (stale == 0 || !queue.isEmpty() || !retries.isEmpty()) {
+      return null;
+    }
+    final long minutes = TimeUnit.MILLISECONDS.toMinutes(maxAgeMillis);
+    final String text =
+        "_"
+            + stale
+            + (stale == 1 ? " stale message" : " stale messages")
+            + " older than "
+            + minutes
+            + (minutes == 1 ? " minute" : " minutes")
+            + " skipped_";
+    final SlackMessage summary =
+        new SlackMessage(
+            text,
+            staleTemplate.channel,
+            staleTemplate.username,
+            staleTemplate.iconUrl,
+            staleTemplate.iconEmoji,
+            staleTemplate.linkNames,
+            new ArrayList<>());
+    LOG.info("Skipped {} stale messages", stale);
+    stale = 0;
+    staleTemplate = null;
+    // Not stale itself, and counted as no message if it fails
+    return new Batch(summary, 0, Long.MAX_VALUE);
+  }
+
+  private static int attachments(SlackMessage message) {
+    return message.attachments == null ? 0 : message.attachments.size();
+  }
+
+  private static SlackMessage merge(List<SlackMessage> messages) {
+    final SlackMessage first = messages.get(0);
+    if (messages.size() == 1) {
+      return first;
+    }
+    final StringBuilder text = new StringBuilder();
+    final List<SlackMessage.Attachment> attachments = new ArrayList<>();
+    for (SlackMessage message : messages) {
+      if (message.text != null) {
+        if (text.length() > 0) {
+          text.append('\n');
+        }
+        text.append(message.text);
+      }
+      if (message.attachments != null) {
+        attachments.addAll(message.attachments);
+      }
+    }
+    return new SlackMessage(
+        text.toString(),
+        first.channel,
+        first.username,
+        first.iconUrl,
+        first.iconEmoji,
+        first.linkNames,
+        attachments);
+  }
+
+  private void post(Batch batch) {
+    synchronized (lock) {
+      inFlight++;
+    }
+    senders.execute(
+        () -> {
+          final StageTimer timer = new StageTimer();
+          final long start = System.nanoTime();
+          Exception error = null;
+          try {
+            client.send(batch.message, metrics, timer);
+          } catch (SlackClient.SlackClientException | RuntimeException e) {
+            error = e;
+          }
+          complete(batch, timer, start, error);
+        });
+  }
+
+  private void complete(Batch batch, StageTimer timer, long startNanos, Exception e) {
+    boolean retry = false;
+    try {
+      metrics.record(timer, slowThresholdMillis);
+      if (e == null) {
+        controller.onSuccess(startNanos, System.nanoTime());
+        return;
+      }
+      final SlackResponse response =
+          e instanceof SlackClient.SlackClientException
+              ? ((SlackClient.SlackClientException) e).getResponse()
+              : null;
+      if (response != null && response.getStatus() == SlackResponse.Status.PERMANENT) {
+        drop(batch, e);
+        return;
+      }
+      controller.onBackoff(startNanos, System.nanoTime());
+      if (++batch.attempts < MAX_ATTEMPTS) {
+        metrics.markRetried();
+        retry = true;
+      } else {
+        drop(batch, e);
+      }
+    } finally {
+      synchronized (lock) {
+        if (retry) {
+          retries.add(batch);
+        }
+        inFlight--;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private void drop(Batch batch, Throwable cause) {
+    LOG.warn("Could not send {} messages to Slack: {}", batch.size, cause.getMessage());
+    for (int i = 0; i < batch.size; i++) {
+      metrics.markDropped(cause);
+    }
+  }
+
+  /** A queued message. */
+  private static final class Queued {
+    private final SlackMessage message;
+    /** When the message's age starts. */
+    private final long timestampMillis;
+
+    private Queued(SlackMessage message, long timestampMillis) {
+      this.message = message;
+      this.timestampMillis = timestampMillis;
+    }
+  }
+
+  private static final class Batch {
+    private final SlackMessage message;
+    private final int size;
+    /** Timestamp of the oldest message. */
+    private final long timestampMillis;
+    private int attempts;
+
+    private Batch(SlackMessage message, int size, long timestampMillis) {
+      this.message = message;
+      this.size = size;
+      this.timestampMillis = timestampMillis;
+    }
+  }
+}
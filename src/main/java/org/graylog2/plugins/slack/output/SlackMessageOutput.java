@@ -1,11 +1,16 @@
 package org.graylog2.plugins.slack.output;
 
+import static com.google.common.base.Strings.emptyToNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.configuration.Configuration;
@@ -16,10 +21,25 @@ import org.graylog2.plugin.inputs.annotations.FactoryClass;
 import org.graylog2.plugin.outputs.MessageOutput;
 import org.graylog2.plugin.outputs.MessageOutputConfigurationException;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugins.slack.MessageFilter;
+import org.graylog2.plugins.slack.MrkdwnEscaper;
 import org.graylog2.plugins.slack.SlackClient;
+import org.graylog2.plugins.slack.SlackConnectionWarmer;
+import org.graylog2.plugins.slack.SlackDestination;
+import org.graylog2.plugins.slack.SlackIncidents;
 import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackMetrics;
 import org.graylog2.plugins.slack.SlackPluginBase;
+import org.graylog2.plugins.slack.SlackPluginConfiguration;
+import org.graylog2.plugins.slack.SlackStateStore;
+import org.graylog2.plugins.slack.SlackStatistics;
+import org.graylog2.plugins.slack.SlackThreads;
+import org.graylog2.plugins.slack.SlackTransport;
+import org.graylog2.plugins.slack.SlackTransports;
+import org.graylog2.plugins.slack.SlackUsers;
+import org.graylog2.plugins.slack.StageTimer;
 import org.graylog2.plugins.slack.StringReplacement;
+import org.graylog2.plugins.slack.transport.SlackWebApi;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
 
@@ -27,15 +47,109 @@ import org.joda.time.format.DateTimeFormat;
  * Call by Graylog when sending output to external source. 
  */
 public class SlackMessageOutput extends SlackPluginBase implements MessageOutput {
+  private static final long DEFAULT_TARGET_LATENCY_MILLIS = 1000;
+
   private AtomicBoolean running = new AtomicBoolean(false);
 
   private final Configuration configuration;
   private final Stream stream;
 
   private final SlackClient client;
+  private final SlackStatistics statistics;
+  private final SlackMetrics metrics;
+  private final SlackConnectionWarmer warmer;
+  private final MessageFilter filter;
+  private final SlackIncidents incidents;
+  private final SlackUsers users;
+  private final SlackStateStore state;
+  /** Workspace to look up users in, null without a Slack token. */
+  private final SlackWebApi api;
+  /** Template of the incident key, null if repeats are posted. */
+  private final String incidentKey;
+  /** Hash of the webhook, token and channel, used in keys instead of the token. */
+  private final String destinationId;
+  /** The output's own and the additional destinations, empty if messages are sent directly. */
+  private final List<Destination> destinations;
 
   @Inject
-  public SlackMessageOutput(@Assisted Stream stream, @Assisted Configuration configuration)
+  public SlackMessageOutput(
+      @Assisted Stream stream,
+      @Assisted Configuration configuration,
+      SlackStatistics statistics,
+      SlackConnectionWarmer warmer,
+      SlackIncidents incidents,
+      SlackUsers users,
+      SlackStateStore state,
+      SlackTransport.Factory transports)
+      throws MessageOutputConfigurationException {
+    this(
+        stream,
+        configuration,
+        new SlackClient(transports.create(configuration)),
+        statistics,
+        warmer,
+        incidents,
+        users,
+        state,
+        transports);
+  }
+
+  public SlackMessageOutput(Stream stream, Configuration configuration)
+      throws MessageOutputConfigurationException {
+    this(
+        stream,
+        configuration,
+        new SlackClient(configuration),
+        new SlackStatistics(new MetricRegistry()));
+  }
+
+  public SlackMessageOutput(
+      Stream stream,
+      Configuration configuration,
+      SlackClient client,
+      SlackStatistics statistics)
+      throws MessageOutputConfigurationException {
+    this(
+        stream,
+        configuration,
+        client,
+        statistics,
+        new SlackConnectionWarmer(new SlackPluginConfiguration()));
+  }
+
+  public SlackMessageOutput(
+      Stream stream,
+      Configuration configuration,
+      SlackClient client,
+      SlackStatistics statistics,
+      SlackConnectionWarmer warmer)
+      throws MessageOutputConfigurationException {
+    this(
+        stream,
+        configuration,
+        client,
+        statistics,
+        warmer,
+        new SlackIncidents(new SlackPluginConfiguration()),
+        new SlackUsers(new SlackPluginConfiguration()),
+        // Without a state file nothing is persisted
+        new SlackStateStore(
+            new SlackPluginConfiguration(),
+            new SlackIncidents(new SlackPluginConfiguration()),
+            new SlackThreads(new SlackPluginConfiguration())),
+        config -> SlackTransports.http(config, SlackClient.DEFAULT_API_URL));
+  }
+
+  public SlackMessageOutput(
+      Stream stream,
+      Configuration configuration,
+      SlackClient client,
+      SlackStatistics statistics,
+      SlackConnectionWarmer warmer,
+      SlackIncidents incidents,
+      SlackUsers users,
+      SlackStateStore state,
+      SlackTransport.Factory transports)
       throws MessageOutputConfigurationException {
     this.configuration = configuration;
     this.stream = stream;
@@ -47,14 +161,91 @@ public class SlackMessageOutput extends SlackPluginBase implements MessageOutput
       throw new MessageOutputConfigurationException("Missing configuration: " + e.getMessage());
     }
 
-    this.client = new SlackClient(configuration);
+    this.filter = MessageFilter.compile(configuration.getString(CK_FILTER));
+    this.client = client;
+    this.statistics = statistics;
+    this.metrics =
+        statistics.create(SlackMessageOutput.class, stream == null ? null : stream.getId());
+    this.destinations = createDestinations(transports);
+    this.incidents = incidents;
+    this.users = users;
+    this.state = state;
+    this.api = webApi(configuration);
+    this.incidentKey = emptyToNull(configuration.getString(CK_INCIDENT_KEY));
+    this.destinationId = destinationId(configuration);
+    this.warmer = configuration.getBoolean(CK_WARM_UP) ? warmer : null;
+    keepWarm();
 
     running.set(true);
   }
 
+  private List<Destination> createDestinations(SlackTransport.Factory transports) {
+    final List<SlackDestination> additional =
+        SlackDestination.parse(configuration.getString(CK_DESTINATIONS));
+    if (configuration.getInt(CK_BATCH_SIZE, 1) <= 1 && additional.isEmpty()) {
+      return Collections.emptyList();
+    }
+    final List<Destination> destinations = new ArrayList<>(additional.size() + 1);
+    destinations.add(new Destination(null, client, metrics));
+    for (int i = 0; i < additional.size(); i++) {
+      final SlackDestination destination = additional.get(i);
+      final String channel = destination.getChannel();
+      destinations.add(
+          new Destination(
+              channel == null ? configuration.getString(CK_CHANNEL) : channel,
+              new SlackClient(transports.create(destination.configure(configuration))),
+              statistics.get(
+                  SlackMessageOutput.class,
+                  metrics.getId(),
+                  MetricRegistry.name(metrics.getInstance(), "destination" + (i + 1)))));
+    }
+    return destinations;
+  }
+
+  private SlackDeliveryQueue createDeliveryQueue(SlackClient client, SlackMetrics metrics) {
+    final int batchSize = configuration.getInt(CK_BATCH_SIZE, 1);
+    final int concurrency =
+        Math.max(1, configuration.getInt(CK_SEND_CONCURRENCY, DEFAULT_SEND_CONCURRENCY));
+    final int slowThreshold = configuration.getInt(CK_SLOW_THRESHOLD, 0);
+    final long targetLatency = slowThreshold > 0 ? slowThreshold : DEFAULT_TARGET_LATENCY_MILLIS;
+    return new SlackDeliveryQueue(
+        client,
+        metrics,
+        new AimdController(batchSize, concurrency, TimeUnit.MILLISECONDS.toNanos(targetLatency)),
+        concurrency,
+        SlackDeliveryQueue.DEFAULT_CAPACITY,
+        slowThreshold,
+        TimeUnit.MINUTES.toMillis(configuration.getInt(CK_MAX_AGE, 0)));
+  }
+
+  private void keepWarm() {
+    if (warmer == null) {
+      return;
+    }
+    if (destinations.isEmpty()) {
+      warmer.keepWarm(client);
+    }
+    for (Destination destination : destinations) {
+      warmer.keepWarm(destination.client);
+    }
+  }
+
   @Override
   public void stop() {
     running.set(false);
+    for (Destination destination : destinations) {
+      destination.queue.stop();
+      if (destination.metrics != metrics) {
+        statistics.remove(destination.metrics);
+      }
+    }
+    statistics.remove(metrics);
+    state.save();
+  }
+
+  /** Metrics of this output, and of its own destination. */
+  SlackMetrics getMetrics() {
+    return metrics;
   }
 
   @Override
@@ -64,6 +255,11 @@ public class SlackMessageOutput extends SlackPluginBase implements MessageOutput
 
   @Override
   public void write(Message msg) throws Exception {
+    if (!filter.matches(msg)) {
+      metrics.markFiltered();
+      return;
+    }
+    final StageTimer timer = new StageTimer();
     final String color = configuration.getString(CK_COLOR);
     SlackMessage message =
         new SlackMessage(
@@ -76,9 +272,12 @@ public class SlackMessageOutput extends SlackPluginBase implements MessageOutput
     // Add attachments if requested.
     if (configuration.getBoolean(CK_ADD_STREAM_INFO)) {
       SlackMessage.Attachment attachment = message.addAttachment("Stream", color, null, null, null);
-      attachment.addField(new SlackMessage.AttachmentField("Source", msg.getSource(), true));
       attachment.addField(
-          new SlackMessage.AttachmentField("Stream Description", stream.getDescription(), false));
+          new SlackMessage.AttachmentField(
+              "Source", MrkdwnEscaper.escape(msg.getSource()), true));
+      attachment.addField(
+          new SlackMessage.AttachmentField(
+              "Stream Description", MrkdwnEscaper.escape(stream.getDescription()), false));
     }
 
     // If short mode is set, message to slack will be stripped down into very short information
@@ -91,18 +290,49 @@ public class SlackMessageOutput extends SlackPluginBase implements MessageOutput
           continue;
         }
         attachment.addField(
-            new SlackMessage.AttachmentField(field.getKey(), field.getValue().toString(), true));
+            new SlackMessage.AttachmentField(
+                field.getKey(), MrkdwnEscaper.escape(field.getValue().toString()), true));
       }
     }
 
-    // Send message to Slack
+    metrics.markRendered();
+    timer.lap(StageTimer.Stage.RENDER);
+
+    // Send message to Slack, or queue it for every destination
     try {
-      client.send(message);
+      if (incidentKey != null) {
+        incidents.send(incidentKey(msg), client, message, metrics, timer);
+      } else if (destinations.isEmpty()) {
+        client.send(message, metrics, timer);
+      } else {
+        final SlackMessage[] messages = new SlackMessage[destinations.size()];
+        for (int i = 0; i < messages.length; i++) {
+          final String channel = destinations.get(i).channel;
+          messages[i] = channel == null ? message : message.withChannel(channel);
+        }
+        for (int i = 0; i < messages.length; i++) {
+          destinations.get(i).queue.offer(messages[i], msg.getTimestamp().getMillis());
+        }
+      }
     } catch (SlackClient.SlackClientException e) {
+      metrics.markDropped(e);
       throw new RuntimeException("Could not send message to Slack.", e);
+    } finally {
+      metrics.record(timer, configuration.getInt(CK_SLOW_THRESHOLD, 0));
+      keepWarm();
     }
   }
 
+  private String incidentKey(Message msg) {
+    return SlackMessageOutput.class.getSimpleName()
+        + '|'
+        + (stream == null ? null : stream.getId())
+        + '|'
+        + destinationId
+        + '|'
+        + StringReplacement.replace(incidentKey, msg.getFields());
+  }
+
   /**
    * Create a slack <code>text</code> message
    *
@@ -112,30 +342,31 @@ public class SlackMessageOutput extends SlackPluginBase implements MessageOutput
    */
   private String buildMessage(Stream stream, Message msg) {
     if (configuration.getBoolean(CK_SHORT_MODE)) {
-      return msg.getTimestamp()
-              .toDateTime(DateTimeZone.getDefault())
-              .toString(DateTimeFormat.shortTime())
-          + ": "
-          + msg.getMessage();
+      final StringBuilder message =
+          new StringBuilder(
+              msg.getTimestamp()
+                  .toDateTime(DateTimeZone.getDefault())
+                  .toString(DateTimeFormat.shortTime()));
+      message.append(": ");
+      return MrkdwnEscaper.append(message, msg.getMessage()).toString();
     }
     String graylogUri = configuration.getString(CK_GRAYLOG2_URL);
     String notifyUser = configuration.getString(CK_NOTIFY_USER);
 
     StringBuilder message = new StringBuilder();
     if (!isNullOrEmpty(notifyUser)) {
-      notifyUser = StringReplacement.replaceWithPrefix(notifyUser, "@", msg.getFields());
+      notifyUser =
+          users.mention(
+              api, StringReplacement.replaceEscapedWithPrefix(notifyUser, "@", msg.getFields()));
       message.append(notifyUser.trim()).append(' ');
     }
-    message.append(msg.getMessage());
+    MrkdwnEscaper.append(message, msg.getMessage());
     if (!isNullOrEmpty(graylogUri)) {
-      message
-          .append('<')
-          .append(buildStreamLink(graylogUri, stream))
-          .append('|')
-          .append(stream.getTitle())
-          .append('>');
+      message.append('<').append(buildStreamLink(graylogUri, stream)).append('|');
+      MrkdwnEscaper.append(message, stream.getTitle()).append('>');
     } else {
-      message.append('_').append(stream.getTitle()).append('_');
+      message.append('_');
+      MrkdwnEscaper.append(message, stream.getTitle()).append('_');
     }
     return message.toString();
   }
@@ -151,6 +382,22 @@ public class SlackMessageOutput extends SlackPluginBase implements MessageOutput
     return configuration.getSource();
   }
 
+  /** A destination with its own client, metrics and queue, so it is rate limited on its own. */
+  private final class Destination {
+    /** Channel to post to, null for the output's own destination. */
+    private final String channel;
+    private final SlackClient client;
+    private final SlackMetrics metrics;
+    private final SlackDeliveryQueue queue;
+
+    private Destination(String channel, SlackClient client, SlackMetrics metrics) {
+      this.channel = channel;
+      this.client = client;
+      this.metrics = metrics;
+      this.queue = createDeliveryQueue(client, metrics);
+    }
+  }
+
   @FactoryClass
   public interface Factory extends MessageOutput.Factory<SlackMessageOutput> {
     @Override
@@ -2,13 +2,18 @@ package org.graylog2.plugins.slack.rest;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.inject.Inject;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.List;
 import javax.ws.rs.Consumes;
-import javax.ws.rs.FormParam;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -18,6 +23,7 @@ import javax.ws.rs.core.StreamingOutput;
 import org.graylog2.plugin.rest.PluginRestResource;
 import org.graylog2.plugins.slack.SlackActionPayload;
 import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackPluginConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,27 +32,61 @@ import org.slf4j.LoggerFactory;
  * https://{host}/api/plugins/org.graylog2.plugins.slack/action</code> in Slack's App Interactive
  * Messages request URL.
  *
+ * <p>If <code>slack_signing_secret</code> is set in <code>graylog.conf</code>, requests without a
+ * valid <code>X-Slack-Signature</code> are rejected before the payload is parsed.
+ *
  * @author Siri C.
  */
 @Path("/action")
 public class SlackActionCallback implements PluginRestResource {
   private static final Logger LOG = LoggerFactory.getLogger(SlackActionCallback.class);
   private static ObjectReader objectReader = new ObjectMapper().reader();
+  private static final String PAYLOAD_PARAM = "payload=";
+
+  private final SlackRequestVerifier verifier;
+  private final byte[] verificationToken;
+
+  @Inject
+  public SlackActionCallback(SlackPluginConfiguration configuration) {
+    this.verifier =
+        new SlackRequestVerifier(
+            configuration.getSigningSecret(), configuration.getRequestMaxAge().toSeconds());
+    final String token = configuration.getVerificationToken();
+    this.verificationToken = token == null ? null : token.getBytes(StandardCharsets.UTF_8);
+    if (!verifier.isEnabled()) {
+      LOG.warn("slack_signing_secret is not set. Slack action requests will not be verified.");
+    }
+  }
 
   /**
    * Receive POST request from Slack when user click any buttons.
    *
-   * @param payload a Slack payload
+   * @param timestamp a Slack request timestamp header
+   * @param signature a Slack request signature header
+   * @param body a raw form body containing the Slack payload
    * @return a response to Slack
    */
   @POST
   @Produces(MediaType.APPLICATION_JSON)
   @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
-  public Response slackAction(@FormParam("payload") String payload) {
+  public Response slackAction(
+      @HeaderParam("X-Slack-Request-Timestamp") String timestamp,
+      @HeaderParam("X-Slack-Signature") String signature,
+      byte[] body) {
+    if (!verifier.verify(timestamp, signature, body, System.currentTimeMillis() / 1000)) {
+      return Response.status(Response.Status.UNAUTHORIZED).build();
+    }
     try {
+      final String payload = getPayload(body);
       if (LOG.isTraceEnabled()) LOG.trace("{}", payload);
       SlackActionPayload slackPayload =
           objectReader.forType(SlackActionPayload.class).readValue(payload);
+      if (verificationToken != null
+          && (slackPayload.token == null
+              || !MessageDigest.isEqual(
+                  verificationToken, slackPayload.token.getBytes(StandardCharsets.UTF_8)))) {
+        return Response.status(Response.Status.UNAUTHORIZED).build();
+      }
       List<SlackMessage.Action> actions = slackPayload.actions;
       if (actions != null) {
         for (SlackMessage.Action action : actions) {
@@ -132,4 +172,24 @@ public class SlackActionCallback implements PluginRestResource {
         };
     return Response.ok(stream).type(MediaType.APPLICATION_JSON_TYPE).build();
   }
+
+  /**
+   * Extract the URL-encoded <code>payload</code> parameter from a form body.
+   *
+   * @param body a raw form body
+   * @return a decoded payload, or null if the body has no payload
+   */
+  private static String getPayload(byte[] body) throws UnsupportedEncodingException {
+    final String form = new String(body, StandardCharsets.UTF_8);
+    int start = 0;
+    while (start < form.length()) {
+      int end = form.indexOf('&', start);
+      if (end < 0) end = form.length();
+      if (form.startsWith(PAYLOAD_PARAM, start)) {
+        return URLDecoder.decode(form.substring(start + PAYLOAD_PARAM.length(), end), "UTF-8");
+      }
+      start = end + 1;
+    }
+    return null;
+  }
 }
@@ -0,0 +1,115 @@
+package org.graylog2.plugins.slack.rest;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verify <code>X-Slack-Signature</code> of requests sent by Slack.
+ *
+ * <p>The signature is <code>v0=hex(HMAC-SHA256(secret, "v0:" + timestamp + ":" + body))</code>.
+ * The timestamp is checked first, so replayed or flooded requests are rejected without any HMAC
+ * work. Each thread keeps its own initialized {@link Mac}, so no key setup happens per request.
+ *
+ * @see <a href="https://api.slack.com/authentication/verifying-requests-from-slack">Verifying
+ *     requests from Slack</a>
+ */
+public class SlackRequestVerifier {
+  private static final Logger LOG = LoggerFactory.getLogger(SlackRequestVerifier.class);
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final String VERSION = "v0";
+  private static final byte[] BASE_PREFIX = (VERSION + ':').getBytes(StandardCharsets.US_ASCII);
+  private static final String SIGNATURE_PREFIX = VERSION + '=';
+  private static final int SIGNATURE_LENGTH = 32;
+
+  private final SecretKeySpec key;
+  private final long maxAgeSeconds;
+  private final ThreadLocal<Mac> macs;
+
+  /**
+   * @param signingSecret Slack App signing secret, null or empty to disable verification
+   * @param maxAgeSeconds maximum accepted difference between request timestamp and local clock
+   */
+  public SlackRequestVerifier(String signingSecret, long maxAgeSeconds) {
+    this.maxAgeSeconds = maxAgeSeconds;
+    if (isNullOrEmpty(signingSecret)) {
+      this.key = null;
+      this.macs = null;
+    } else {
+      this.key = new SecretKeySpec(signingSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+      this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+  }
+
+  public boolean isEnabled() {
+    return key != null;
+  }
+
+  /**
+   * Check a request against its Slack signature headers.
+   *
+   * @param timestamp value of <code>X-Slack-Request-Timestamp</code>
+   * @param signature value of <code>X-Slack-Signature</code>
+   * @param body raw request body
+   * @param nowSeconds current epoch time in seconds
+   * @return true if the request is fresh and correctly signed, or verification is disabled
+   */
+  public boolean verify(String timestamp, String signature, byte[] body, long nowSeconds) {
+    if (!isEnabled()) return true;
+    if (isNullOrEmpty(timestamp) || isNullOrEmpty(signature) || body == null) return false;
+    final long ts;
+    try {
+      ts = Long.parseLong(timestamp);
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    if (Math.abs(nowSeconds - ts) > maxAgeSeconds) {
+      if (LOG.isDebugEnabled()) LOG.debug("Rejected stale Slack request with timestamp {}", ts);
+      return false;
+    }
+    final byte[] expected = decodeSignature(signature);
+    if (expected == null) return false;
+
+    final Mac mac = macs.get();
+    mac.update(BASE_PREFIX);
+    mac.update(timestamp.getBytes(StandardCharsets.US_ASCII));
+    mac.update((byte) ':');
+    mac.update(body);
+    // doFinal() also resets the Mac for the next request on this thread
+    return MessageDigest.isEqual(mac.doFinal(), expected);
+  }
+
+  /** Decode <code>v0=hex</code> into raw bytes, or return null if malformed. */
+  private static byte[] decodeSignature(String signature) {
+    if (signature.length() != SIGNATURE_PREFIX.length() + SIGNATURE_LENGTH * 2
+        || !signature.startsWith(SIGNATURE_PREFIX)) {
+      return null;
+    }
+    final byte[] bytes = new byte[SIGNATURE_LENGTH];
+    int pos = SIGNATURE_PREFIX.length();
+    for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+      int hi = Character.digit(signature.charAt(pos++), 16);
+      int lo = Character.digit(signature.charAt(pos++), 16);
+      if (hi < 0 || lo < 0) return null;
+      bytes[i] = (byte) ((hi << 4) | lo);
+    }
+    return bytes;
+  }
+
+  private Mac newMac() {
+    try {
+      final Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      return mac;
+    } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+      throw new IllegalStateException("Unable to initialize " + ALGORITHM, e);
+    }
+  }
+}
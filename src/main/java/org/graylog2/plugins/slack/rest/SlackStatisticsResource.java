@@ -0,0 +1,114 @@
+package org.graylog2.plugins.slack.rest;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import org.apache.shiro.authz.annotation.RequiresAuthentication;
+import org.graylog2.plugin.rest.PluginRestResource;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackStatistics;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Read-only delivery state of every Slack output and alarm callback on this node, at <code>
+ * https://{host}/api/plugins/org.graylog2.plugins.slack/stats</code>.
+ *
+ * <p>All values are read from atomics and meters maintained by the delivery path, so polling this
+ * resource never blocks a sender.
+ */
+@RequiresAuthentication
+@Path("/stats")
+public class SlackStatisticsResource implements PluginRestResource {
+  private final SlackStatistics statistics;
+
+  @Inject
+  public SlackStatisticsResource(SlackStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Summary getStatistics() {
+    final List<DeliveryStatus> deliveries = new ArrayList<>();
+    for (SlackMetrics metrics : statistics.getAll()) {
+      deliveries.add(new DeliveryStatus(metrics));
+    }
+    return new Summary(deliveries);
+  }
+
+  public static class Summary {
+    @JsonProperty public List<DeliveryStatus> deliveries;
+
+    public Summary(List<DeliveryStatus> deliveries) {
+      this.deliveries = deliveries;
+    }
+  }
+
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public static class DeliveryStatus {
+    @JsonProperty public String type;
+
+    @JsonProperty(value = "stream_id")
+    public String streamId;
+
+    @JsonProperty public String instance;
+
+    @JsonProperty public long rendered;
+    @JsonProperty public long filtered;
+    @JsonProperty public long grouped;
+    @JsonProperty public long suppressed;
+    @JsonProperty public long stale;
+    @JsonProperty public long retries;
+    @JsonProperty public long dropped;
+
+    @JsonProperty(value = "in_flight")
+    public int inFlight;
+
+    @JsonProperty(value = "rate_limit_wait_ms")
+    public long rateLimitWaitMillis;
+
+    @JsonProperty(value = "queue_depth")
+    public Integer queueDepth;
+
+    @JsonProperty(value = "batch_size")
+    public Integer batchSize;
+
+    @JsonProperty public Integer concurrency;
+
+    @JsonProperty(value = "last_error")
+    public String lastError;
+
+    @JsonProperty(value = "last_error_at")
+    public String lastErrorAt;
+
+    public DeliveryStatus(SlackMetrics metrics) {
+      this.type = metrics.getOwner();
+      this.streamId = metrics.getId();
+      this.instance = metrics.getInstance();
+      this.rendered = metrics.getRendered();
+      this.filtered = metrics.getFiltered();
+      this.grouped = metrics.getGrouped();
+      this.suppressed = metrics.getSuppressed();
+      this.stale = metrics.getStale();
+      this.retries = metrics.getRetries();
+      this.dropped = metrics.getDropped();
+      this.inFlight = metrics.getInFlight();
+      this.rateLimitWaitMillis = metrics.getRateLimitWaitMillis();
+      this.queueDepth = metrics.getGauge(SlackMetrics.QUEUE_DEPTH);
+      this.batchSize = metrics.getGauge(SlackMetrics.BATCH_SIZE);
+      this.concurrency = metrics.getGauge(SlackMetrics.CONCURRENCY);
+      this.lastError = metrics.getLastError();
+      final long errorAt = metrics.getLastErrorAt();
+      if (errorAt > 0) {
+        this.lastErrorAt = new DateTime(errorAt, DateTimeZone.UTC).toString();
+      }
+    }
+  }
+}
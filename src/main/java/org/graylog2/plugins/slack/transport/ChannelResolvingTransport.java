@@ -0,0 +1,73 @@
+package org.graylog2.plugins.slack.transport;
+
+import org.graylog2.plugins.slack.SlackChannels;
+import org.graylog2.plugins.slack.SlackClient.SlackClientException;
+import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackResponse;
+import org.graylog2.plugins.slack.SlackTransport;
+import org.graylog2.plugins.slack.StageTimer;
+
+/**
+ * Posts Web API messages to the ID of their channel instead of its name. If Slack answers <code>
+ * channel_not_found</code>, e.g. because the channel was renamed, the workspace's channels are
+ * listed again in the background, and the message is sent once more to the channel's name.
+ */
+public class ChannelResolvingTransport implements SlackTransport {
+  private final SlackTransport delegate;
+  private final SlackChannels channels;
+  private final SlackWebApi api;
+
+  public ChannelResolvingTransport(
+      SlackTransport delegate, SlackChannels channels, SlackWebApi api) {
+    this.delegate = delegate;
+    this.channels = channels;
+    this.api = api;
+  }
+
+  public SlackTransport getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer)
+      throws SlackClientException {
+    final SlackMessage resolved = resolve(message);
+    try {
+      return delegate.send(resolved, metrics, stageTimer);
+    } catch (SlackClientException e) {
+      final SlackMessage retry = refresh(message, resolved, e);
+      if (retry == null) {
+        throw e;
+      }
+      return delegate.send(retry, metrics, stageTimer);
+    }
+  }
+
+  private SlackMessage resolve(SlackMessage message) {
+    final String id = channels.resolve(api, message.channel);
+    return id == null || id.equals(message.channel) ? message : message.withChannel(id);
+  }
+
+  /** @return the message to send again, or null if the channel was not the problem */
+  private SlackMessage refresh(
+      SlackMessage message, SlackMessage resolved, SlackClientException e) {
+    if (resolved == message
+        || e.getResponse() == null
+        || !"channel_not_found".equals(e.getResponse().getError())) {
+      return null;
+    }
+    channels.invalidate(api);
+    return message;
+  }
+
+  @Override
+  public void warmUp() {
+    delegate.warmUp();
+  }
+
+  @Override
+  public String getWarmUpKey() {
+    return delegate.getWarmUpKey();
+  }
+}
@@ -0,0 +1,134 @@
+package org.graylog2.plugins.slack.transport;
+
+import com.codahale.metrics.Timer;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import org.apache.commons.lang3.StringUtils;
+import org.graylog2.plugins.slack.SlackClient.SlackClientException;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackResponse;
+import org.graylog2.plugins.slack.SlackTransport;
+import org.graylog2.plugins.slack.StageTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Base of transports sending messages to Slack over HTTP, optionally through a proxy. */
+public abstract class HttpTransport implements SlackTransport {
+  private static final Logger LOG = LoggerFactory.getLogger(HttpTransport.class);
+  private static final int WARM_UP_TIMEOUT_MILLIS = 5000;
+
+  private final String proxyURL;
+
+  protected HttpTransport(String proxyURL) {
+    this.proxyURL = proxyURL;
+  }
+
+  /** URL messages are sent to, used to find the host to warm up. */
+  protected abstract String getTargetUrl();
+
+  /**
+   * Resolve Slack's address and open a connection to it ahead of the next send. The connection is
+   * returned to the JDK's keep-alive cache, which the next send to the same host reuses, so it does
+   * not pay for DNS lookup, TCP connect and TLS handshake. Failures are only logged.
+   */
+  @Override
+  public void warmUp() {
+    try {
+      final URL root = getRootUrl();
+      if (StringUtils.isEmpty(proxyURL)) {
+        InetAddress.getAllByName(root.getHost());
+      }
+      final HttpURLConnection conn = openConnection(root);
+      conn.setRequestMethod("HEAD");
+      conn.setInstanceFollowRedirects(false);
+      conn.setConnectTimeout(WARM_UP_TIMEOUT_MILLIS);
+      conn.setReadTimeout(WARM_UP_TIMEOUT_MILLIS);
+      final int responseCode = conn.getResponseCode();
+      // Only a fully read response lets the connection go back to the keep-alive cache
+      try (final InputStream in =
+          responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream()) {
+        if (in != null) {
+          ByteStreams.copy(in, ByteStreams.nullOutputStream());
+        }
+      }
+      LOG.debug("Warmed up connection to {} ({})", root, responseCode);
+    } catch (URISyntaxException | IOException e) {
+      LOG.debug("Could not warm up connection to Slack", e);
+    }
+  }
+
+  /** Root URL of the Slack host messages are sent to, and the proxy if any. */
+  @Override
+  public String getWarmUpKey() {
+    try {
+      final String root = getRootUrl().toString();
+      return StringUtils.isEmpty(proxyURL) ? root : root + " via " + proxyURL;
+    } catch (MalformedURLException e) {
+      return null;
+    }
+  }
+
+  private URL getRootUrl() throws MalformedURLException {
+    final URL url = new URL(getTargetUrl());
+    return new URL(url.getProtocol(), url.getHost(), url.getPort(), "/");
+  }
+
+  protected HttpURLConnection openConnection(URL url) throws URISyntaxException, IOException {
+    return openConnection(url, proxyURL);
+  }
+
+  static HttpURLConnection openConnection(URL url, String proxyURL)
+      throws URISyntaxException, IOException {
+    if (!StringUtils.isEmpty(proxyURL)) {
+      final URI proxyUri = new URI(proxyURL);
+      InetSocketAddress sockAddress = new InetSocketAddress(proxyUri.getHost(), proxyUri.getPort());
+      final Proxy proxy = new Proxy(Proxy.Type.HTTP, sockAddress);
+      return (HttpURLConnection) url.openConnection(proxy);
+    }
+    return (HttpURLConnection) url.openConnection();
+  }
+
+  /**
+   * Wait for Slack's response, classify and record it. The response body is always read to the
+   * end, so the connection can be reused.
+   *
+   * @param conn a connection with the request sent
+   * @param metrics metrics of the sending output or alarm callback
+   * @param stageTimer timings of this notification, the send stage is added
+   * @param timer the running request latency timer
+   * @return Slack's response
+   * @throws SlackClientException if Slack did not accept the message
+   */
+  protected SlackResponse readResponse(
+      HttpURLConnection conn, SlackMetrics metrics, StageTimer stageTimer, Timer.Context timer)
+      throws SlackClientException {
+    final SlackResponse response;
+    try {
+      final int responseCode = conn.getResponseCode();
+      timer.stop();
+      stageTimer.lap(StageTimer.Stage.SEND);
+      metrics.markResponse(responseCode);
+      try (final InputStream body =
+          responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream()) {
+        response = SlackResponse.parse(responseCode, conn.getHeaderField("Retry-After"), body);
+      }
+    } catch (IOException e) {
+      throw new SlackClientException("Could not POST to Slack API", e);
+    }
+    metrics.markResult(response);
+    if (!response.isSuccess()) {
+      LOG.debug("Slack did not accept the message: {}", response);
+      throw new SlackClientException(response);
+    }
+    return response;
+  }
+}
@@ -0,0 +1,91 @@
+package org.graylog2.plugins.slack.transport;
+
+import com.google.common.base.Charsets;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.graylog2.plugins.slack.SlackClient.SlackClientException;
+import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackResponse;
+import org.graylog2.plugins.slack.SlackTransport;
+import org.graylog2.plugins.slack.StageTimer;
+
+/**
+ * Keeps messages in memory instead of sending them to Slack, and optionally appends them as JSON
+ * lines to a file. Useful for dry runs, tests and benchmarks which measure everything but the
+ * network.
+ */
+public class RecordingTransport implements SlackTransport {
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  private final int capacity;
+  private final Path file;
+  private final Deque<SlackMessage> messages = new ArrayDeque<>();
+  private final AtomicLong recorded = new AtomicLong();
+
+  public RecordingTransport() {
+    this(DEFAULT_CAPACITY, null);
+  }
+
+  /**
+   * @param capacity number of most recent messages kept in memory
+   * @param file file to append messages to, or null
+   */
+  public RecordingTransport(int capacity, Path file) {
+    this.capacity = capacity;
+    this.file = file;
+  }
+
+  @Override
+  public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer)
+      throws SlackClientException {
+    final byte[] payload;
+    try {
+      payload = message.getJsonString().getBytes(Charsets.UTF_8);
+    } catch (IOException e) {
+      throw new SlackClientException("Could not encode message.", e);
+    }
+    stageTimer.lap(StageTimer.Stage.ENCODE);
+    metrics.updatePayloadBytes(payload.length);
+    synchronized (messages) {
+      if (capacity > 0) {
+        if (messages.size() == capacity) {
+          messages.removeFirst();
+        }
+        messages.addLast(message);
+      }
+      if (file != null) {
+        try (final OutputStream os =
+            Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+          os.write(payload);
+          os.write('\n');
+        } catch (IOException e) {
+          throw new SlackClientException("Could not write message to " + file, e);
+        }
+      }
+    }
+    recorded.incrementAndGet();
+    stageTimer.lap(StageTimer.Stage.SEND);
+    return SlackResponse.SUCCESS;
+  }
+
+  /** The most recent messages, oldest first. */
+  public List<SlackMessage> getMessages() {
+    synchronized (messages) {
+      return new ArrayList<>(messages);
+    }
+  }
+
+  /** Number of messages recorded since creation. */
+  public long getRecorded() {
+    return recorded.get();
+  }
+}
@@ -0,0 +1,150 @@
+package org.graylog2.plugins.slack.transport;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.graylog2.plugins.slack.SlackClient.SlackClientException;
+import org.graylog2.plugins.slack.SlackResponse;
+
+/**
+ * Calls Slack Web API methods other than posting messages, e.g. to look up channels and users.
+ * Lookups are rare and cached by their callers, so they use plain blocking requests.
+ */
+public class SlackWebApi {
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final int TIMEOUT_MILLIS = 10000;
+
+  private final String slackToken;
+  private final String apiUrl;
+  private final String proxyURL;
+
+  /**
+   * @param slackToken a Slack App token
+   * @param apiUrl base URL of Slack Web API methods, ending with <code>/</code>
+   * @param proxyURL proxy URL, or null
+   */
+  public SlackWebApi(String slackToken, String apiUrl, String proxyURL) {
+    this.slackToken = slackToken;
+    this.apiUrl = apiUrl;
+    this.proxyURL = proxyURL;
+  }
+
+  /** Clients with equal keys call the same workspace, and see the same channels and users. */
+  public String getKey() {
+    return apiUrl + ' ' + slackToken;
+  }
+
+  /**
+   * Call a Web API method.
+   *
+   * @param method name of the method, e.g. <code>conversations.list</code>
+   * @param params arguments of the method
+   * @return Slack's response
+   * @throws SlackClientException if the request failed or Slack answered with an error
+   */
+  public JsonNode call(String method, Map<String, String> params) throws SlackClientException {
+    final HttpURLConnection conn;
+    try {
+      final StringBuilder url = new StringBuilder();
+      url.append(apiUrl).append(method).append("?token=").append(urlEncode(slackToken));
+      for (Map.Entry<String, String> param : params.entrySet()) {
+        url.append('&').append(param.getKey()).append('=').append(urlEncode(param.getValue()));
+      }
+      conn = HttpTransport.openConnection(new URL(url.toString()), proxyURL);
+      conn.setRequestMethod("GET");
+      conn.setConnectTimeout(TIMEOUT_MILLIS);
+      conn.setReadTimeout(TIMEOUT_MILLIS);
+    } catch (URISyntaxException | IOException e) {
+      throw new SlackClientException("Could not call Slack API method " + method, e);
+    }
+    return readResponse(conn, method);
+  }
+
+  /**
+   * Upload a text file with <code>files.upload</code>. The multipart body is streamed to Slack in
+   * chunks, encoded straight from the content.
+   *
+   * @param params arguments of the method, e.g. <code>channels</code> and <code>thread_ts</code>
+   * @param filename name of the file
+   * @param content content of the file
+   * @return Slack's response
+   * @throws SlackClientException if the request failed or Slack answered with an error
+   */
+  public JsonNode upload(Map<String, String> params, String filename, String content)
+      throws SlackClientException {
+    final String boundary =
+        "graylog-slack-" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+    final HttpURLConnection conn;
+    try {
+      conn = HttpTransport.openConnection(new URL(apiUrl + "files.upload"), proxyURL);
+      conn.setRequestMethod("POST");
+      conn.setDoOutput(true);
+      conn.setChunkedStreamingMode(0);
+      conn.setConnectTimeout(TIMEOUT_MILLIS);
+      conn.setReadTimeout(TIMEOUT_MILLIS);
+      conn.setRequestProperty("Authorization", "Bearer " + slackToken);
+      conn.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+      try (final Writer out =
+          new OutputStreamWriter(conn.getOutputStream(), StandardCharsets.UTF_8)) {
+        for (Map.Entry<String, String> param : params.entrySet()) {
+          out.write("--" + boundary + "\r\n");
+          out.write("Content-Disposition: form-data; name=\"" + param.getKey() + "\"\r\n\r\n");
+          out.write(param.getValue());
+          out.write("\r\n");
+        }
+        out.write("--" + boundary + "\r\n");
+        out.write(
+            "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n");
+        out.write("Content-Type: text/plain; charset=utf-8\r\n\r\n");
+        out.write(content);
+        out.write("\r\n--" + boundary + "--\r\n");
+      }
+    } catch (URISyntaxException | IOException e) {
+      throw new SlackClientException("Could not upload file to Slack", e);
+    }
+    return readResponse(conn, "files.upload");
+  }
+
+  private static JsonNode readResponse(HttpURLConnection conn, String method)
+      throws SlackClientException {
+    final byte[] body;
+    final SlackResponse response;
+    try {
+      final int responseCode = conn.getResponseCode();
+      try (final InputStream in =
+          responseCode >= 400 ? conn.getErrorStream() : conn.getInputStream()) {
+        body = in == null ? new byte[0] : ByteStreams.toByteArray(in);
+      }
+      response =
+          SlackResponse.parse(
+              responseCode, conn.getHeaderField("Retry-After"), new ByteArrayInputStream(body));
+    } catch (IOException e) {
+      throw new SlackClientException("Could not call Slack API method " + method, e);
+    }
+    if (!response.isSuccess()) {
+      throw new SlackClientException(response);
+    }
+    try {
+      return OBJECT_MAPPER.readTree(body);
+    } catch (IOException e) {
+      throw new SlackClientException("Could not read response of Slack API method " + method, e);
+    }
+  }
+
+  private static String urlEncode(String value) throws UnsupportedEncodingException {
+    return URLEncoder.encode(value, "UTF-8");
+  }
+}
@@ -0,0 +1,74 @@
+package org.graylog2.plugins.slack.transport;
+
+import com.codahale.metrics.Timer;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import org.graylog2.plugins.slack.SlackClient.SlackClientException;
+import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackResponse;
+import org.graylog2.plugins.slack.StageTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends messages with the Slack Web API method <code>chat.postMessage</code>, or updates them with
+ * <code>chat.update</code> if {@link SlackMessage#ts} is set.
+ */
+public class WebApiTransport extends HttpTransport {
+  private static final Logger LOG = LoggerFactory.getLogger(WebApiTransport.class);
+
+  private final String slackToken;
+  private final String apiUrl;
+
+  /**
+   * @param slackToken a Slack App token
+   * @param apiUrl base URL of Slack Web API methods, ending with <code>/</code>
+   * @param proxyURL proxy URL, or null
+   */
+  public WebApiTransport(String slackToken, String apiUrl, String proxyURL) {
+    super(proxyURL);
+    this.slackToken = slackToken;
+    this.apiUrl = apiUrl;
+  }
+
+  @Override
+  protected String getTargetUrl() {
+    return apiUrl;
+  }
+
+  @Override
+  public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer)
+      throws SlackClientException {
+    final URL url;
+    try {
+      StringBuilder urlBuilder = new StringBuilder();
+      urlBuilder
+          .append(apiUrl)
+          .append(message.ts == null ? "chat.postMessage" : "chat.update")
+          .append("?token=")
+          .append(slackToken)
+          .append('&')
+          .append(message.getRequestString());
+      if (LOG.isTraceEnabled()) LOG.trace("{}", urlBuilder);
+      url = new URL(urlBuilder.toString());
+      metrics.updatePayloadBytes(urlBuilder.length());
+      stageTimer.lap(StageTimer.Stage.ENCODE);
+    } catch (MalformedURLException e) {
+      throw new SlackClientException("Error while constructing webhook URL.", e);
+    }
+    final HttpURLConnection conn;
+    try {
+      conn = openConnection(url);
+      conn.setRequestMethod("GET");
+      conn.setRequestProperty("Content-Type", "application/json;charset=utf-8");
+    } catch (URISyntaxException | IOException e) {
+      throw new SlackClientException("Could not open connection to Slack API", e);
+    }
+    final Timer.Context timer = metrics.timeRequest();
+    return readResponse(conn, metrics, stageTimer, timer);
+  }
+}
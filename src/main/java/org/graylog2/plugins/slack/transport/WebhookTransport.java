@@ -0,0 +1,68 @@
+package org.graylog2.plugins.slack.transport;
+
+import com.codahale.metrics.Timer;
+import com.google.common.base.Charsets;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import org.graylog2.plugins.slack.SlackClient.SlackClientException;
+import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackResponse;
+import org.graylog2.plugins.slack.StageTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** POSTs messages as JSON to a Slack incoming webhook. */
+public class WebhookTransport extends HttpTransport {
+  private static final Logger LOG = LoggerFactory.getLogger(WebhookTransport.class);
+
+  private final String webhookUrl;
+
+  public WebhookTransport(String webhookUrl, String proxyURL) {
+    super(proxyURL);
+    this.webhookUrl = webhookUrl;
+  }
+
+  @Override
+  protected String getTargetUrl() {
+    return webhookUrl;
+  }
+
+  @Override
+  public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer)
+      throws SlackClientException {
+    final URL url;
+    try {
+      url = new URL(webhookUrl);
+    } catch (MalformedURLException e) {
+      throw new SlackClientException("Error while constructing webhook URL.", e);
+    }
+    final HttpURLConnection conn;
+    final byte[] payload;
+    try {
+      String json = message.getJsonString();
+      if (LOG.isTraceEnabled()) LOG.trace("{}", json);
+      payload = json.getBytes(Charsets.UTF_8);
+      stageTimer.lap(StageTimer.Stage.ENCODE);
+      conn = openConnection(url);
+      conn.setDoOutput(true);
+      conn.setRequestMethod("POST");
+      conn.setRequestProperty("Content-Type", "application/json");
+      conn.setFixedLengthStreamingMode(payload.length);
+    } catch (URISyntaxException | IOException e) {
+      throw new SlackClientException("Could not open connection to Slack API", e);
+    }
+    metrics.updatePayloadBytes(payload.length);
+    final Timer.Context timer = metrics.timeRequest();
+    try (final OutputStream os = conn.getOutputStream()) {
+      os.write(payload);
+    } catch (IOException e) {
+      throw new SlackClientException("Could not POST to Slack API", e);
+    }
+    return readResponse(conn, metrics, stageTimer, timer);
+  }
+}
@@ -0,0 +1,79 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FieldExtractorTest {
+
+    @Test
+    public void testCompile() {
+        final FieldExtractor[] extractors = FieldExtractor.compile(" level, ,took_ms|number , http.method ");
+        assertEquals(3, extractors.length);
+        assertEquals("level", extractors[0].getName());
+        assertEquals("took_ms", extractors[1].getName());
+        assertEquals("http.method", extractors[2].getName());
+        assertEquals(0, FieldExtractor.compile(null).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFormat() {
+        FieldExtractor.compile("level|bogus");
+    }
+
+    @Test
+    public void testText() {
+        final FieldExtractor extractor = FieldExtractor.compile("level")[0];
+        assertEquals("3", extractor.extract(message("level", 3)));
+        assertNull(extractor.extract(message("facility", "order-service")));
+    }
+
+    @Test
+    public void testNumber() {
+        final FieldExtractor extractor = FieldExtractor.compile("took_ms|number")[0];
+        assertEquals("12,345,678", extractor.extract(message("took_ms", 12345678L)));
+        assertEquals("1,234.568", extractor.extract(message("took_ms", 1234.5678d)));
+        assertEquals("1,234", extractor.extract(message("took_ms", "1234")));
+        assertEquals("n/a", extractor.extract(message("took_ms", "n/a")));
+    }
+
+    @Test
+    public void testDate() {
+        final FieldExtractor extractor = FieldExtractor.compile("seen|date")[0];
+        final DateTime dateTime = new DateTime(2018, 5, 1, 12, 34, 56, 789, DateTimeZone.UTC);
+        assertEquals("2018-05-01 12:34:56.789 UTC", extractor.extract(message("seen", dateTime)));
+        assertEquals("2018-05-01 12:34:56.789 UTC", extractor.extract(message("seen", dateTime.getMillis())));
+        assertEquals("2018-05-01 12:34:56.789 UTC", extractor.extract(message("seen", "2018-05-01T14:34:56.789+02:00")));
+        assertEquals("yesterday", extractor.extract(message("seen", "yesterday")));
+    }
+
+    @Test
+    public void testTruncate() {
+        final FieldExtractor extractor = FieldExtractor.compile("note|5")[0];
+        assertEquals("short", extractor.extract(message("note", "short")));
+        assertEquals("long\u2026", extractor.extract(message("note", "longer text")));
+    }
+
+    @Test
+    public void testDottedPath() {
+        final FieldExtractor extractor = FieldExtractor.compile("http.request.method")[0];
+        final Message message = message("http", ImmutableMap.of("request", ImmutableMap.of("method", "GET")));
+        assertEquals("GET", extractor.extract(message));
+
+        message.addField("http.request.method", "POST");
+        assertEquals("POST", extractor.extract(message));
+
+        assertNull(extractor.extract(message("http", "plain")));
+    }
+
+    private static Message message(String field, Object value) {
+        final Message message = new Message("message", "source", new DateTime(DateTimeZone.UTC));
+        message.addField(field, value);
+        return message;
+    }
+}
@@ -0,0 +1,100 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugin.Message;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MessageFilterTest {
+    @Test
+    public void testEmptyFilterMatchesAll() {
+        assertSame(MessageFilter.ALL, MessageFilter.compile(null));
+        assertSame(MessageFilter.ALL, MessageFilter.compile("  "));
+    }
+
+    @Test
+    public void testPresence() {
+        assertTrue(matches("http_status", message()));
+        assertFalse(matches("missing", message()));
+        assertTrue(matches("NOT missing", message()));
+    }
+
+    @Test
+    public void testLevelThreshold() {
+        assertTrue(matches("level <= 3", message()));
+        assertFalse(matches("level < 3", message()));
+        assertTrue(matches("level>=3", message()));
+        // numeric strings are compared as numbers
+        assertTrue(matches("http_status >= 500", message()));
+        assertFalse(matches("application < 10", message()));
+    }
+
+    @Test
+    public void testEquality() {
+        assertTrue(matches("application = billing", message()));
+        assertTrue(matches("application == 'billing'", message()));
+        assertTrue(matches("level = 3.0", message()));
+        assertTrue(matches("application != web", message()));
+        assertFalse(matches("missing != web", message()));
+        assertTrue(matches("source = \"host \\\"one\\\"\"", message()));
+    }
+
+    @Test
+    public void testRegex() {
+        assertTrue(matches("source =~ \"^host\"", message()));
+        assertFalse(matches("source !~ 'one'", message()));
+        assertTrue(matches("application =~ \"(?i)BILL\"", message()));
+    }
+
+    @Test
+    public void testNestedField() {
+        assertTrue(matches("http.request.method = GET", message()));
+        assertFalse(matches("http.response", message()));
+    }
+
+    @Test
+    public void testBooleanOperators() {
+        assertTrue(matches("level <= 2 OR application = billing", message()));
+        assertFalse(matches("level <= 2 or application = billing and missing", message()));
+        assertTrue(matches("(level <= 2 || application = billing) && !missing", message()));
+        assertFalse(matches("NOT (level = 3 AND http_status)", message()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRegex() {
+        MessageFilter.compile("source =~ \"(\"");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNumericOperatorNeedsNumber() {
+        MessageFilter.compile("level < high");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnbalancedParentheses() {
+        MessageFilter.compile("(level < 3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrailingInput() {
+        MessageFilter.compile("level < 3 level");
+    }
+
+    private static boolean matches(String expression, Message message) {
+        return MessageFilter.compile(expression).matches(message);
+    }
+
+    private static Message message() {
+        final Message message = new Message("payment failed", "host \"one\"", new DateTime(DateTimeZone.UTC));
+        message.addField("level", 3);
+        message.addField("application", "billing");
+        message.addField("http_status", "503");
+        message.addField("http", ImmutableMap.of("request", ImmutableMap.of("method", "GET")));
+        return message;
+    }
+}
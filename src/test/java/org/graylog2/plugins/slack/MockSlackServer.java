@@ -0,0 +1,287 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An embedded HTTP server mimicking Slack's incoming webhook and <code>chat.postMessage</code>
+ * endpoints, with configurable latency and failure modes.
+ *
+ * <p>Point a plugin configuration at {@link #webhookUrl()} and create clients with
+ * {@link #apiUrl()} as Web API base URL.
+ */
+public class MockSlackServer implements AutoCloseable {
+    public static final String WEBHOOK_PATH = "/services/T000/B000/XXXX";
+    public static final String API_PATH = "/api/";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile long latencyMillis = 0;
+    private volatile int retryAfterSeconds = 1;
+    private volatile int rateLimitEvery = 0;
+    private volatile String okFalseError = null;
+    private volatile int okFalseEvery = 0;
+    private final AtomicInteger rateLimitNext = new AtomicInteger();
+    private final AtomicInteger serverErrorNext = new AtomicInteger();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+    private final AtomicLong okFalse = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong warmUps = new AtomicLong();
+    private volatile String lastBody;
+    private volatile Queue<String> bodies;
+    private volatile String lastPath;
+    private volatile List<Map.Entry<String, String>> channels = Collections.emptyList();
+    private volatile String missingChannel;
+    private final AtomicLong channelLists = new AtomicLong();
+    private volatile String usersJson = "[]";
+    private final AtomicLong userLists = new AtomicLong();
+
+    public MockSlackServer() throws IOException {
+        this(16);
+    }
+
+    public MockSlackServer(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(WEBHOOK_PATH, exchange -> handle(exchange, false));
+        server.createContext(API_PATH, exchange -> handle(exchange, true));
+        server.createContext("/", exchange -> {
+            warmUps.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public String webhookUrl() {
+        return baseUrl() + WEBHOOK_PATH;
+    }
+
+    public String apiUrl() {
+        return baseUrl() + API_PATH;
+    }
+
+    /** Delay every response by the given time. */
+    public MockSlackServer latency(long millis) {
+        this.latencyMillis = millis;
+        return this;
+    }
+
+    /** Answer every n-th request with 429 and <code>Retry-After</code>; 0 disables. */
+    public MockSlackServer rateLimitEvery(int n, int retryAfterSeconds) {
+        this.rateLimitEvery = n;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /** Answer the next n requests with 429 and <code>Retry-After</code>. */
+    public MockSlackServer rateLimitNext(int n, int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+        rateLimitNext.set(n);
+        return this;
+    }
+
+    /** Answer the next n requests with HTTP 500. */
+    public MockSlackServer serverErrorBurst(int n) {
+        serverErrorNext.set(n);
+        return this;
+    }
+
+    /** Answer every n-th Web API request with <code>{"ok":false,"error":...}</code>; 0 disables. */
+    public MockSlackServer okFalseEvery(int n, String error) {
+        this.okFalseEvery = n;
+        this.okFalseError = error;
+        return this;
+    }
+
+    /**
+     * Answer <code>conversations.list</code> with these channels, one per page, and post requests
+     * to other channel IDs with <code>channel_not_found</code>.
+     */
+    public MockSlackServer channels(Map<String, String> idsByName) {
+        this.channels = new ArrayList<>(idsByName.entrySet());
+        return this;
+    }
+
+    /** Answer posts to this channel with <code>channel_not_found</code>. */
+    public MockSlackServer missingChannel(String channel) {
+        this.missingChannel = channel;
+        return this;
+    }
+
+    /** Answer <code>users.list</code> with these members, as JSON array. */
+    public MockSlackServer users(String membersJson) {
+        this.usersJson = membersJson;
+        return this;
+    }
+
+    public long userLists() {
+        return userLists.get();
+    }
+
+    /** Pages of channels listed. */
+    public long channelLists() {
+        return channelLists.get();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long accepted() {
+        return accepted.get();
+    }
+
+    public long rateLimited() {
+        return rateLimited.get();
+    }
+
+    public long serverErrors() {
+        return serverErrors.get();
+    }
+
+    public long okFalse() {
+        return okFalse.get();
+    }
+
+    /** Requests to any path other than the webhook and Web API, e.g. connection warm-ups. */
+    public long warmUps() {
+        return warmUps.get();
+    }
+
+    public long bytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /** Path of the last request, e.g. <code>/api/chat.update</code>. */
+    public String lastPath() {
+        return lastPath;
+    }
+
+    /** Body of the last request, or the query string for Web API GET requests. */
+    public String lastBody() {
+        return lastBody;
+    }
+
+    /** Keep the bodies of all following requests, see {@link #bodies()}. */
+    public MockSlackServer recordBodies() {
+        this.bodies = new ConcurrentLinkedQueue<>();
+        return this;
+    }
+
+    /** Bodies, or queries if there was no body, of the requests since {@link #recordBodies()}. */
+    public List<String> bodies() {
+        return bodies == null ? Collections.<String>emptyList() : new ArrayList<>(bodies);
+    }
+
+    private void handle(HttpExchange exchange, boolean api) throws IOException {
+        final long n = requests.incrementAndGet();
+        // Requests may be concurrent, e.g. background channel listings, so only this one's are used below
+        final String path = exchange.getRequestURI().getPath();
+        final String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            final byte[] bytes = ByteStreams.toByteArray(in);
+            bytesReceived.addAndGet(bytes.length);
+            body = bytes.length > 0 ? new String(bytes, StandardCharsets.UTF_8) : exchange.getRequestURI().getRawQuery();
+            final Queue<String> recorded = bodies;
+            if (recorded != null && body != null) {
+                recorded.add(body);
+            }
+        }
+        lastPath = path;
+        lastBody = body;
+        if (latencyMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        final int every = rateLimitEvery;
+        if (rateLimitNext.getAndUpdate(i -> i > 0 ? i - 1 : 0) > 0 || (every > 0 && n % every == 0)) {
+            rateLimited.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+            respond(exchange, 429, api ? "{\"ok\":false,\"error\":\"rate_limited\"}" : "rate_limited");
+        } else if (serverErrorNext.getAndUpdate(i -> i > 0 ? i - 1 : 0) > 0) {
+            serverErrors.incrementAndGet();
+            respond(exchange, 500, "internal_error");
+        } else if (api && path.endsWith("/conversations.list")) {
+            respond(exchange, 200, listChannels(exchange.getRequestURI().getQuery()));
+        } else if (api && path.endsWith("/users.list")) {
+            userLists.incrementAndGet();
+            respond(exchange, 200, "{\"ok\":true,\"members\":" + usersJson + "}");
+        } else if (api && missingChannel != null && body.contains("channel=" + missingChannel + "&")) {
+            okFalse.incrementAndGet();
+            respond(exchange, 200, "{\"ok\":false,\"error\":\"channel_not_found\"}");
+        } else if (api && okFalseEvery > 0 && n % okFalseEvery == 0) {
+            okFalse.incrementAndGet();
+            respond(exchange, 200, "{\"ok\":false,\"error\":\"" + okFalseError + "\"}");
+        } else {
+            accepted.incrementAndGet();
+            respond(exchange, 200, api ? "{\"ok\":true,\"channel\":\"C024BE91L\",\"ts\":\"" + n + ".000100\"}" : "ok");
+        }
+    }
+
+    private String listChannels(String query) {
+        channelLists.incrementAndGet();
+        final List<Map.Entry<String, String>> all = channels;
+        int page = 0;
+        for (String param : query.split("&")) {
+            if (param.startsWith("cursor=") && param.length() > "cursor=".length()) {
+                page = Integer.parseInt(param.substring("cursor=".length()));
+            }
+        }
+        final StringBuilder body = new StringBuilder("{\"ok\":true,\"channels\":[");
+        if (page < all.size()) {
+            body.append("{\"id\":\"").append(all.get(page).getValue())
+                    .append("\",\"name\":\"").append(all.get(page).getKey()).append("\"}");
+        }
+        final String next = page + 1 < all.size() ? String.valueOf(page + 1) : "";
+        return body.append("],\"response_metadata\":{\"next_cursor\":\"").append(next).append("\"}}").toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", body.startsWith("{") ? "application/json; charset=utf-8" : "text/html");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,32 @@
+package org.graylog2.plugins.slack;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MrkdwnEscaperTest {
+    @Test
+    public void testPlainTextIsNotCopied() {
+        final String text = "Connection refused: db-1:5432";
+        assertSame(text, MrkdwnEscaper.escape(text));
+        assertNull(MrkdwnEscaper.escape(null));
+    }
+
+    @Test
+    public void testControlCharactersAreEscaped() {
+        assertEquals("&lt;!channel&gt; a &amp;&amp; b", MrkdwnEscaper.escape("<!channel> a && b"));
+        assertEquals("List&lt;String&gt;", MrkdwnEscaper.escape("List<String>"));
+        assertEquals("&amp;", MrkdwnEscaper.escape("&"));
+    }
+
+    @Test
+    public void testAppend() {
+        final StringBuilder builder = new StringBuilder("text: ");
+        MrkdwnEscaper.append(builder, "if (a < b)");
+        MrkdwnEscaper.append(builder, null);
+        MrkdwnEscaper.append(builder, " ok");
+        assertEquals("text: if (a &lt; b) ok", builder.toString());
+    }
+}
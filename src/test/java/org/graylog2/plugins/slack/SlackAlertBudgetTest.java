@@ -0,0 +1,81 @@
+package org.graylog2.plugins.slack;
+
+import com.github.joschi.jadconfig.JadConfig;
+import com.github.joschi.jadconfig.ValidationException;
+import com.github.joschi.jadconfig.repositories.InMemoryRepository;
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugin.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlackAlertBudgetTest {
+    private MockSlackServer server;
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSlackServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void budgetSlidesWithTheWindow() {
+        final SlackAlertBudget budget = new SlackAlertBudget(2, 60000, clock::get);
+
+        assertTrue(budget.tryAcquire());
+        clock.addAndGet(30000);
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+
+        clock.addAndGet(31000);
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+    }
+
+    @Test(expected = ValidationException.class)
+    public void negativeBudgetIsRejected() throws Exception {
+        new JadConfig(new InMemoryRepository(ImmutableMap.of("slack_alert_budget", "-1")),
+                new SlackPluginConfiguration()).process();
+    }
+
+    @Test
+    public void zeroBudgetIsUnlimited() {
+        final SlackAlertBudget budget = new SlackAlertBudget(0, 60000, clock::get);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(budget.tryAcquire());
+        }
+    }
+
+    @Test
+    public void suppressedAlertsAreSummarizedPerDestination() throws Exception {
+        final SlackAlertBudget budget = new SlackAlertBudget(1, 60000, clock::get);
+        final SlackClient client = new SlackClient(new Configuration(ImmutableMap.of(
+                "webhook_url", server.webhookUrl())));
+        final SlackMessage template = new SlackMessage(null, "#alerts", "Graylog", ":ghost:", false);
+
+        budget.suppress("alerts", client, template, "Billing");
+        budget.suppress("alerts", client, template, "Web <prod>");
+        budget.suppress("alerts", client, template, "Billing");
+        budget.sendSummaries();
+
+        assertEquals(1, server.accepted());
+        assertTrue(server.lastBody().contains(
+                "3 more alerts from streams Billing (2), Web &lt;prod&gt; (1) were not sent"));
+        assertTrue(server.lastBody().contains("#alerts"));
+
+        budget.sendSummaries();
+        assertEquals(1, server.requests());
+    }
+}
@@ -0,0 +1,108 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugins.slack.transport.ChannelResolvingTransport;
+import org.graylog2.plugins.slack.transport.SlackWebApi;
+import org.graylog2.plugins.slack.transport.WebApiTransport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SlackChannelsTest {
+    private MockSlackServer server;
+    private SlackChannels channels;
+    private SlackWebApi api;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSlackServer(2);
+        channels = new SlackChannels(60000);
+        api = new SlackWebApi("xoxb-test", server.apiUrl(), null);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void resolvesNamesFromAllPagesInTheBackground() throws Exception {
+        server.channels(ImmutableMap.of("general", "C01", "alerts", "C02", "ops", "C03"));
+
+        assertEquals("#alerts", channels.resolve(api, "#alerts"));
+        channels.awaitRefreshes();
+
+        assertEquals("C02", channels.resolve(api, "#alerts"));
+        assertEquals("C03", channels.resolve(api, "#ops"));
+        assertEquals(3, server.channelLists());
+    }
+
+    @Test
+    public void keepsIdsUnknownNamesAndUsers() throws Exception {
+        server.channels(ImmutableMap.of("general", "C01"));
+        channels.resolve(api, "#general");
+        channels.awaitRefreshes();
+
+        assertEquals("C0ABCDEF", channels.resolve(api, "C0ABCDEF"));
+        assertEquals("@john", channels.resolve(api, "@john"));
+        assertEquals("#unknown", channels.resolve(api, "#unknown"));
+        assertEquals(1, server.channelLists());
+    }
+
+    @Test
+    public void failedListingsFallBackToNames() throws Exception {
+        server.serverErrorBurst(1);
+
+        assertEquals("#alerts", channels.resolve(api, "#alerts"));
+        channels.awaitRefreshes();
+        assertEquals("#alerts", channels.resolve(api, "#alerts"));
+        channels.awaitRefreshes();
+        assertEquals(1, server.requests());
+    }
+
+    @Test
+    public void expiredChannelsAreServedWhileListedAgain() throws Exception {
+        final SlackChannels expiring = new SlackChannels(0);
+        server.channels(ImmutableMap.of("alerts", "C02"));
+        expiring.resolve(api, "#alerts");
+        expiring.awaitRefreshes();
+        server.latency(200);
+
+        final long start = System.nanoTime();
+        assertEquals("C02", expiring.resolve(api, "#alerts"));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+        expiring.awaitRefreshes();
+    }
+
+    @Test
+    public void postsToIdsAndRefreshesRenamedChannels() throws Exception {
+        server.channels(ImmutableMap.of("alerts", "C02"));
+        final SlackClient client = new SlackClient(new ChannelResolvingTransport(
+                new WebApiTransport("xoxb-test", server.apiUrl(), null), channels, api));
+        channels.resolve(api, "#alerts");
+        channels.awaitRefreshes();
+
+        client.send(message());
+        assertTrue(server.lastBody().contains("channel=C02&"));
+
+        // #alerts was renamed, and a new #alerts created: resent to the name, and listed again
+        server.channels(ImmutableMap.of("alerts-old", "C02", "alerts", "C04")).missingChannel("C02").recordBodies();
+        client.send(message());
+        channels.awaitRefreshes();
+        assertTrue(server.bodies().stream().anyMatch(body -> body.contains("channel=%23alerts&")));
+
+        client.send(message());
+        assertTrue(server.lastBody().contains("channel=C04&"));
+        assertEquals(1, server.okFalse());
+        assertEquals(3, server.accepted());
+    }
+
+    private static SlackMessage message() {
+        return new SlackMessage("Hello", "#alerts", "Graylog", ":ghost:", true);
+    }
+}
@@ -0,0 +1,128 @@
+package org.graylog2.plugins.slack;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugin.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SlackClientTest {
+    private MockSlackServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSlackServer(2);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testWebhookPost() throws Exception {
+        webhookClient().send(message());
+
+        assertEquals(1, server.accepted());
+        assertTrue(server.lastBody().contains("\"channel\":\"#test_channel\""));
+        assertTrue(server.lastBody().contains("\"text\":\"Hello\""));
+    }
+
+    @Test
+    public void testWebApiGet() throws Exception {
+        final SlackClient client = new SlackClient(new Configuration(ImmutableMap.of(
+                "webhook_url", server.webhookUrl(),
+                "token", "xoxb-test")), server.apiUrl());
+        client.send(message());
+
+        assertEquals(1, server.accepted());
+        assertTrue(server.lastBody().startsWith("token=xoxb-test&"));
+        assertTrue(server.lastBody().contains("channel=%23test_channel"));
+    }
+
+    @Test(expected = SlackClient.SlackClientException.class)
+    public void testServerError() throws Exception {
+        server.serverErrorBurst(1);
+        webhookClient().send(message());
+    }
+
+    @Test(expected = SlackClient.SlackClientException.class)
+    public void testRateLimited() throws Exception {
+        server.rateLimitNext(1, 1);
+        webhookClient().send(message());
+    }
+
+    @Test
+    public void testWebApiOkFalse() throws Exception {
+        server.okFalseEvery(1, "channel_not_found");
+        final MetricRegistry registry = new MetricRegistry();
+        final SlackMetrics metrics = new SlackMetrics(registry, SlackClientTest.class, "stream1");
+        final SlackClient client = new SlackClient(new Configuration(ImmutableMap.of(
+                "webhook_url", server.webhookUrl(),
+                "token", "xoxb-test")), server.apiUrl());
+        try {
+            client.send(message(), metrics, new StageTimer());
+            fail("ok:false must fail");
+        } catch (SlackClient.SlackClientException e) {
+            assertEquals(SlackResponse.Status.PERMANENT, e.getResponse().getStatus());
+            assertEquals("channel_not_found", e.getResponse().getError());
+        }
+        assertEquals(1, registry.counter(SlackClientTest.class.getName() + ".stream1.results.permanent").getCount());
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        final SlackClient client = webhookClient();
+        client.warmUp();
+
+        assertEquals(1, server.warmUps());
+        assertEquals(0, server.requests());
+        assertEquals(server.baseUrl() + "/", client.getWarmUpKey());
+    }
+
+    @Test
+    public void testMetricsRecorded() throws Exception {
+        final MetricRegistry registry = new MetricRegistry();
+        final SlackMetrics metrics = new SlackMetrics(registry, SlackClientTest.class, "stream1");
+        final SlackClient client = webhookClient();
+        final StageTimer timer = new StageTimer();
+        client.send(message(), metrics, timer);
+        metrics.record(timer, 0);
+        server.rateLimitNext(1, 1);
+        try {
+            client.send(message(), metrics, new StageTimer());
+        } catch (SlackClient.SlackClientException e) {
+            // expected
+        }
+
+        final String prefix = SlackClientTest.class.getName() + ".stream1.";
+        assertEquals(1, registry.counter(prefix + "responses.200").getCount());
+        assertEquals(1, registry.counter(prefix + "responses.429").getCount());
+        assertEquals(1, registry.meter(prefix + "rateLimited").getCount());
+        assertEquals(1, registry.counter(prefix + "results.success").getCount());
+        assertEquals(1, registry.counter(prefix + "results.rate_limited").getCount());
+        assertEquals(2, registry.timer(prefix + "httpLatency").getCount());
+        assertEquals(2, registry.histogram(prefix + "payloadBytes").getCount());
+        assertEquals(1, registry.timer(prefix + "stage.encode").getCount());
+        assertEquals(1, registry.timer(prefix + "stage.send").getCount());
+        assertTrue(timer.getNanos(StageTimer.Stage.SEND) > 0);
+        assertTrue(metrics.getRateLimitWaitMillis() > 0);
+        assertEquals(0, metrics.getInFlight());
+
+        metrics.remove();
+        assertTrue(registry.getNames().isEmpty());
+    }
+
+    private SlackClient webhookClient() {
+        return new SlackClient(new Configuration(ImmutableMap.of("webhook_url", server.webhookUrl())));
+    }
+
+    private static SlackMessage message() {
+        return new SlackMessage("Hello", "#test_channel", "Graylog", null, true);
+    }
+}
@@ -0,0 +1,106 @@
+package org.graylog2.plugins.slack;
+
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.alerts.AbstractAlertCondition;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageSummary;
+import org.graylog2.plugin.alarms.AlertCondition;
+import org.graylog2.plugin.streams.Stream;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Realistic configurations, messages, streams and alert results, shared by the load test and the
+ * benchmarks module, which depends on the test jar.
+ */
+public final class SlackFixtures {
+    public static final String FOOTER_TEMPLATE = "${source} | ${application_name:-unknown} | ${level}";
+    public static final String NOTIFY_TEMPLATE = "${user_id:-oncall} ${owner:-}";
+    public static final String CUSTOM_FIELDS = "level, application_name, http_status, request_path, client_ip";
+
+    private SlackFixtures() {
+    }
+
+    /**
+     * @param webhookUrl incoming webhook URL
+     * @param backlogItems backlog items rendered per notification
+     * @return a modifiable configuration of an output or alarm callback posting to <code>#alerts</code>
+     */
+    public static Map<String, Object> configuration(String webhookUrl, int backlogItems) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("webhook_url", webhookUrl);
+        config.put("channel", "#alerts");
+        config.put("user_name", "Graylog");
+        config.put("color", "#FF0000");
+        config.put("notify_user", NOTIFY_TEMPLATE);
+        config.put("link_names", true);
+        config.put("add_stream_info", true);
+        config.put("short_mode", false);
+        config.put("graylog2_url", "https://graylog.example.com/");
+        config.put("backlog_items", backlogItems);
+        config.put("custom_fields", CUSTOM_FIELDS);
+        config.put("footer_text", FOOTER_TEMPLATE);
+        config.put("ts_field", "timestamp");
+        return config;
+    }
+
+    /** An error log message with the fields of a typical web application. */
+    public static Message message(int i) {
+        final Message message = new Message(
+                "java.lang.IllegalStateException: Connection pool exhausted while handling request " + i
+                        + "\n\tat com.example.db.Pool.acquire(Pool.java:118)"
+                        + "\n\tat com.example.api.OrderResource.create(OrderResource.java:57)",
+                "app-server-" + (i % 8) + ".example.com",
+                new DateTime(1531420618000L + i * 1000L, DateTimeZone.UTC));
+        message.addField("level", 3);
+        message.addField("facility", "order-service");
+        message.addField("application_name", "orders");
+        message.addField("http_method", "POST");
+        message.addField("http_status", 500);
+        message.addField("request_path", "/api/v2/orders/" + (100000 + i));
+        message.addField("response_time_ms", 1250.5 + i);
+        message.addField("user_id", "jdoe");
+        message.addField("client_ip", "10.1.2." + (i % 250));
+        message.addField("thread", "http-nio-8080-exec-" + (i % 200));
+        message.addField("logger_name", "com.example.api.OrderResource");
+        message.addField("exception_class", "java.lang.IllegalStateException");
+        message.addField("trace_id", "4bf92f3577b34da6a3ce929d0e0e" + (4736 + i));
+        message.addField("gl2_remote_ip", "10.0.0.12");
+        message.addField("gl2_source_input", "5b0c6d7e8f9a0b1c2d3e4f50");
+        message.addField("gl2_source_node", "0f1e2d3c-4b5a-6978-8695-a4b3c2d1e0f9");
+        return message;
+    }
+
+    public static Stream stream() {
+        return stub(Stream.class, ImmutableMap.of(
+                "getId", "5b0c6d7e8f9a0b1c2d3e4f51",
+                "getTitle", "Production errors",
+                "getDescription", "All error messages from production application servers"));
+    }
+
+    /** A triggered alert with a backlog of {@link #message(int)}s. */
+    public static AlertCondition.CheckResult checkResult(int backlogSize) {
+        final AlertCondition condition = stub(AlertCondition.class,
+                ImmutableMap.of("getId", "condition-1", "getBacklog", backlogSize));
+        final List<MessageSummary> summaries = new ArrayList<>(backlogSize);
+        for (int i = 0; i < backlogSize; i++) {
+            summaries.add(new MessageSummary("graylog_" + (i % 3), message(i)));
+        }
+        return new AbstractAlertCondition.CheckResult(true, condition,
+                "Stream had " + backlogSize + " messages in the last 5 minutes with trigger condition more than 10 messages.",
+                new DateTime(DateTimeZone.UTC), summaries);
+    }
+
+    /** Create an interface implementation answering the named getters with fixed values. */
+    @SuppressWarnings("unchecked")
+    public static <T> T stub(Class<T> type, Map<String, Object> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> answers.get(method.getName()));
+    }
+}
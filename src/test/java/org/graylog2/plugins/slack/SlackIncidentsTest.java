@@ -0,0 +1,123 @@
+package org.graylog2.plugins.slack;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugin.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SlackIncidentsTest {
+    private MockSlackServer server;
+    private SlackMetrics metrics;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSlackServer(2);
+        metrics = new SlackMetrics(new MetricRegistry(), SlackIncidentsTest.class, "stream1");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void repeatsUpdateTheFirstMessage() throws Exception {
+        final SlackIncidents incidents = new SlackIncidents(10, 60000, 0);
+        final SlackClient client = apiClient();
+
+        incidents.send("disk full", client, message(), metrics, new StageTimer());
+        assertEquals("/api/chat.postMessage", server.lastPath());
+
+        incidents.send("disk full", client, message(), metrics, new StageTimer());
+        assertEquals("/api/chat.update", server.lastPath());
+        assertTrue(server.lastBody().contains("ts=1.000100"));
+        assertTrue(server.lastBody().contains("channel=C024BE91L"));
+        assertTrue(server.lastBody().contains("Seen+2+times"));
+
+        incidents.send("out of memory", client, message(), metrics, new StageTimer());
+        assertEquals("/api/chat.postMessage", server.lastPath());
+        assertEquals(3, server.requests());
+        assertEquals(2, incidents.size());
+        assertEquals(1, metrics.getGrouped());
+    }
+
+    @Test
+    public void repeatsWithinTheUpdateIntervalAreOnlyCounted() throws Exception {
+        final SlackIncidents incidents = new SlackIncidents(10, 60000, 60000);
+        final SlackClient client = apiClient();
+
+        for (int i = 0; i < 5; i++) {
+            incidents.send("disk full", client, message(), metrics, new StageTimer());
+        }
+
+        assertEquals(1, server.requests());
+        assertEquals(4, metrics.getGrouped());
+    }
+
+    @Test
+    public void countedRepeatsAreSentAtTheEndOfTheUpdateInterval() throws Exception {
+        final SlackIncidents incidents = new SlackIncidents(10, 60000, 200);
+        final SlackClient client = apiClient();
+
+        for (int i = 0; i < 3; i++) {
+            incidents.send("disk full", client, message(), metrics, new StageTimer());
+        }
+        assertEquals(1, server.requests());
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (server.requests() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, server.requests());
+        assertEquals("/api/chat.update", server.lastPath());
+        assertTrue(server.lastBody().contains("Seen+3+times"));
+
+        Thread.sleep(400);
+        assertEquals(2, server.requests());
+    }
+
+    @Test
+    public void webhookMessagesAreAlwaysPosted() throws Exception {
+        final SlackIncidents incidents = new SlackIncidents(10, 60000, 0);
+        final SlackClient client = new SlackClient(new Configuration(ImmutableMap.of(
+                "webhook_url", server.webhookUrl())));
+
+        incidents.send("disk full", client, message(), metrics, new StageTimer());
+        incidents.send("disk full", client, message(), metrics, new StageTimer());
+
+        assertEquals(2, server.accepted());
+        assertEquals(0, incidents.size());
+    }
+
+    @Test
+    public void failedPostsAreNotRemembered() throws Exception {
+        final SlackIncidents incidents = new SlackIncidents(10, 60000, 0);
+        final SlackClient client = apiClient();
+        server.serverErrorBurst(1);
+        try {
+            incidents.send("disk full", client, message(), metrics, new StageTimer());
+        } catch (SlackClient.SlackClientException expected) {
+            // the next occurrence is posted again
+        }
+
+        incidents.send("disk full", client, message(), metrics, new StageTimer());
+
+        assertEquals("/api/chat.postMessage", server.lastPath());
+        assertEquals(0, metrics.getGrouped());
+    }
+
+    private SlackClient apiClient() {
+        return new SlackClient(new Configuration(ImmutableMap.of(
+                "webhook_url", server.webhookUrl(),
+                "token", "xoxb-test")), server.apiUrl());
+    }
+
+    private static SlackMessage message() {
+        return new SlackMessage("Disk full", "#test_channel", "Graylog", ":ghost:", true);
+    }
+}
@@ -0,0 +1,65 @@
+package org.graylog2.plugins.slack;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlackMessageTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void copiesEncodeLikeTheOriginal() throws Exception {
+        final SlackMessage original = message("#general");
+        final String json = original.getJsonString();
+        final String request = original.getRequestString();
+
+        final SlackMessage copy = message("#general").withChannel("#other");
+        final SlackMessage expected = message("#other");
+
+        assertEquals(OBJECT_MAPPER.readTree(expected.getJsonString()), OBJECT_MAPPER.readTree(copy.getJsonString()));
+        assertEquals(sorted(expected.getRequestString()), sorted(copy.getRequestString()));
+        assertEquals(OBJECT_MAPPER.readTree(json), OBJECT_MAPPER.readTree(original.getJsonString()));
+        assertEquals(sorted(request), sorted(original.getRequestString()));
+    }
+
+    @Test
+    public void copiesShareTheEncoding() throws Exception {
+        final SlackMessage original = message("#general");
+        final SlackMessage first = original.withChannel("#first");
+        final SlackMessage second = original.withChannel("#second");
+
+        final JsonNode json = OBJECT_MAPPER.readTree(first.getJsonString());
+        assertEquals("#first", json.get("channel").asText());
+        assertEquals("Hello", json.get("text").asText());
+        assertEquals("#second", OBJECT_MAPPER.readTree(second.getJsonString()).get("channel").asText());
+        assertEquals("#general", OBJECT_MAPPER.readTree(original.getJsonString()).get("channel").asText());
+        assertTrue(second.getRequestString().startsWith("channel=%23second&"));
+    }
+
+    @Test
+    public void copiesWithoutChannel() throws Exception {
+        final SlackMessage copy = message("#general").withChannel(null);
+
+        assertTrue(OBJECT_MAPPER.readTree(copy.getJsonString()).get("channel").isNull());
+        assertFalse(copy.getRequestString().contains("channel="));
+    }
+
+    private static SlackMessage message(String channel) {
+        final SlackMessage message = new SlackMessage("Hello", channel, "Graylog", ":ghost:", true);
+        message.addAttachment("Stream", "#FF0000", null, null, null)
+                .addField(new SlackMessage.AttachmentField("Source", "example.org", true));
+        return message;
+    }
+
+    private static String sorted(String request) {
+        final String[] params = request.split("&");
+        Arrays.sort(params);
+        return String.join("&", params);
+    }
+}
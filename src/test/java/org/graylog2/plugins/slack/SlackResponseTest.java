@@ -0,0 +1,70 @@
+package org.graylog2.plugins.slack;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SlackResponseTest {
+
+    @Test
+    public void testWebhookOk() throws IOException {
+        final InputStream body = body("ok");
+        assertSame(SlackResponse.SUCCESS, SlackResponse.parse(200, null, body));
+        assertEquals(-1, body.read());
+    }
+
+    @Test
+    public void testWebApiOk() throws IOException {
+        final InputStream body = body("{\"ok\":true,\"channel\":\"C024BE91L\",\"message\":{\"text\":\"Hello\",\"attachments\":[{\"ok\":false}]}}\n");
+        assertSame(SlackResponse.SUCCESS, SlackResponse.parse(200, null, body));
+        assertEquals(-1, body.read());
+    }
+
+    @Test
+    public void testWebApiPermanentError() throws IOException {
+        final SlackResponse response = SlackResponse.parse(200, null, body("{\"ok\":false,\"error\":\"channel_not_found\"}"));
+        assertEquals(SlackResponse.Status.PERMANENT, response.getStatus());
+        assertEquals("channel_not_found", response.getError());
+    }
+
+    @Test
+    public void testWebApiRetryableError() throws IOException {
+        final SlackResponse response = SlackResponse.parse(200, null, body("{\"error\":\"internal_error\",\"ok\":false}"));
+        assertEquals(SlackResponse.Status.RETRYABLE, response.getStatus());
+    }
+
+    @Test
+    public void testWebApiRateLimited() throws IOException {
+        final SlackResponse response = SlackResponse.parse(200, "30", body("{\"ok\":false,\"error\":\"ratelimited\"}"));
+        assertEquals(SlackResponse.Status.RATE_LIMITED, response.getStatus());
+        assertEquals(30000, response.getRetryAfterMillis());
+    }
+
+    @Test
+    public void testHttpRateLimited() throws IOException {
+        final SlackResponse response = SlackResponse.parse(429, null, body("rate_limited"));
+        assertEquals(SlackResponse.Status.RATE_LIMITED, response.getStatus());
+        assertEquals("rate_limited", response.getError());
+        assertEquals(1000, response.getRetryAfterMillis());
+    }
+
+    @Test
+    public void testWebhookErrors() throws IOException {
+        assertEquals(SlackResponse.Status.PERMANENT, SlackResponse.parse(404, null, body("channel_not_found")).getStatus());
+        assertEquals(SlackResponse.Status.PERMANENT, SlackResponse.parse(400, null, body("invalid_payload")).getStatus());
+        assertEquals(SlackResponse.Status.RETRYABLE, SlackResponse.parse(503, null, null).getStatus());
+        assertNull(SlackResponse.parse(503, null, null).getError());
+        assertEquals("invalid_auth", SlackResponse.parse(401, null, body("{\"ok\":false,\"error\":\"invalid_auth\"}")).getError());
+    }
+
+    private static InputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,121 @@
+package org.graylog2.plugins.slack;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugin.configuration.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+public class SlackStateStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockSlackServer server;
+    private SlackMetrics metrics;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSlackServer();
+        metrics = new SlackMetrics(new MetricRegistry(), SlackStateStoreTest.class, "stream1");
+        file = folder.getRoot().toPath().resolve("slack-state.bin");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void incidentsAndThreadsSurviveARestart() throws Exception {
+        final SlackIncidents incidents = new SlackIncidents(10, 60000, 0);
+        final SlackThreads threads = new SlackThreads(10);
+        final SlackClient client = apiClient();
+        incidents.send("disk full", client, message(), metrics, new StageTimer());
+        threads.start("stream1|condition1", client.send(message()));
+        new SlackStateStore(file, 0, incidents, threads).save();
+
+        final SlackIncidents restoredIncidents = new SlackIncidents(10, 60000, 0);
+        final SlackThreads restoredThreads = new SlackThreads(10);
+        new SlackStateStore(file, 0, restoredIncidents, restoredThreads);
+
+        assertEquals(1, restoredIncidents.size());
+        final SlackThreads.Parent parent = restoredThreads.get("stream1|condition1", 60000);
+        assertNotNull(parent);
+        assertEquals("C024BE91L", parent.getChannel());
+        assertEquals("2.000100", parent.getTs());
+
+        restoredIncidents.send("disk full", client, message(), metrics, new StageTimer());
+        assertEquals("/api/chat.update", server.lastPath());
+        assertEquals(3, server.requests());
+    }
+
+    @Test
+    public void expiredIncidentsAreSkipped() throws Exception {
+        final SlackIncidents incidents = new SlackIncidents(10, 60000, 0);
+        incidents.send("disk full", apiClient(), message(), metrics, new StageTimer());
+        new SlackStateStore(file, 0, incidents, new SlackThreads(10)).save();
+        Thread.sleep(10);
+
+        final SlackIncidents restored = new SlackIncidents(10, 5, 0);
+        new SlackStateStore(file, 0, restored, new SlackThreads(10));
+
+        assertEquals(0, restored.size());
+    }
+
+    @Test
+    public void restoredIncidentsKeepTheirRemainingLifetime() throws Exception {
+        final SlackIncidents incidents = new SlackIncidents(10, 60000, 0);
+        final SlackClient client = apiClient();
+        incidents.send("disk full", client, message(), metrics, new StageTimer());
+        new SlackStateStore(file, 0, incidents, new SlackThreads(10)).save();
+
+        final SlackIncidents restored = new SlackIncidents(10, 500, 0);
+        new SlackStateStore(file, 0, restored, new SlackThreads(10));
+        assertEquals(1, restored.size());
+        Thread.sleep(600);
+
+        restored.send("disk full", client, message(), metrics, new StageTimer());
+        assertEquals("/api/chat.postMessage", server.lastPath());
+    }
+
+    @Test
+    public void stateIsOnlyReadableByItsOwner() throws Exception {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        new SlackStateStore(file, 0, new SlackIncidents(10, 60000, 0), new SlackThreads(10)).save();
+
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+    }
+
+    @Test
+    public void unreadableStateIsIgnored() throws Exception {
+        Files.write(file, new byte[] {0x53, 0x4c, 0x4b, 0x53, 0, 0, 0, 1, 0, 0, 0, 7, 0});
+        final SlackIncidents incidents = new SlackIncidents(10, 60000, 0);
+
+        new SlackStateStore(file, 0, incidents, new SlackThreads(10));
+
+        assertEquals(0, incidents.size());
+    }
+
+    private SlackClient apiClient() {
+        return new SlackClient(new Configuration(ImmutableMap.of(
+                "webhook_url", server.webhookUrl(),
+                "token", "xoxb-test")), server.apiUrl());
+    }
+
+    private static SlackMessage message() {
+        return new SlackMessage("Disk full", "#test_channel", "Graylog", ":ghost:", true);
+    }
+}
@@ -0,0 +1,95 @@
+package org.graylog2.plugins.slack;
+
+import com.github.joschi.jadconfig.JadConfig;
+import com.github.joschi.jadconfig.ValidationException;
+import com.github.joschi.jadconfig.repositories.InMemoryRepository;
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugins.slack.transport.ChannelResolvingTransport;
+import org.graylog2.plugins.slack.transport.RecordingTransport;
+import org.graylog2.plugins.slack.transport.WebApiTransport;
+import org.graylog2.plugins.slack.transport.WebhookTransport;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SlackTransportsTest {
+    private static final Configuration WEBHOOK_CONFIG = new Configuration(ImmutableMap.of(
+            "webhook_url", "https://hooks.slack.com/services/T000/B000/XXXX"));
+    private static final Configuration WEB_API_CONFIG = new Configuration(ImmutableMap.of(
+            "webhook_url", "https://hooks.slack.com/services/T000/B000/XXXX",
+            "token", "xoxb-test"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testHttpSelectsByToken() throws Exception {
+        final SlackTransports transports = transports(ImmutableMap.of());
+        assertTrue(transports.create(WEBHOOK_CONFIG) instanceof WebhookTransport);
+        final SlackTransport webApi = transports.create(WEB_API_CONFIG);
+        assertTrue(webApi instanceof ChannelResolvingTransport);
+        assertTrue(((ChannelResolvingTransport) webApi).getDelegate() instanceof WebApiTransport);
+        assertEquals("https://slack.com/", transports.create(WEB_API_CONFIG).getWarmUpKey());
+    }
+
+    @Test
+    public void testWebhookOnly() throws Exception {
+        final SlackTransports transports = transports(ImmutableMap.of("slack_transport", "webhook"));
+        assertTrue(transports.create(WEB_API_CONFIG) instanceof WebhookTransport);
+    }
+
+    @Test(expected = ValidationException.class)
+    public void testUnknownTransport() throws Exception {
+        transports(ImmutableMap.of("slack_transport", "carrier_pigeon"));
+    }
+
+    @Test
+    public void testRecording() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("slack.jsonl");
+        final SlackTransports transports = transports(ImmutableMap.of(
+                "slack_transport", "recording",
+                "slack_transport_recording_file", file.toString()));
+        final SlackTransport transport = transports.create(WEBHOOK_CONFIG);
+        assertSame(transport, transports.create(WEB_API_CONFIG));
+
+        final SlackClient client = new SlackClient(transport);
+        client.send(new SlackMessage("first", "#test_channel", "Graylog", null, false));
+        client.send(new SlackMessage("second", "#test_channel", "Graylog", null, false));
+
+        final List<SlackMessage> messages = ((RecordingTransport) transport).getMessages();
+        assertEquals(2, messages.size());
+        assertEquals("first", messages.get(0).text);
+        final List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).contains("\"text\":\"second\""));
+    }
+
+    @Test
+    public void testRecordingCapacity() throws Exception {
+        final RecordingTransport transport = new RecordingTransport(1, null);
+        final SlackClient client = new SlackClient(transport);
+        client.send(new SlackMessage("first", "#test_channel", "Graylog", null, false));
+        client.send(new SlackMessage("second", "#test_channel", "Graylog", null, false));
+
+        assertEquals(2, transport.getRecorded());
+        assertEquals(1, transport.getMessages().size());
+        assertEquals("second", transport.getMessages().get(0).text);
+    }
+
+    private static SlackTransports transports(Map<String, String> properties) throws Exception {
+        final SlackPluginConfiguration configuration = new SlackPluginConfiguration();
+        new JadConfig(new InMemoryRepository(properties), configuration).process();
+        return new SlackTransports(configuration);
+    }
+}
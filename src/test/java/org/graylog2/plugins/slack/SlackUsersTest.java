@@ -0,0 +1,80 @@
+package org.graylog2.plugins.slack;
+
+import org.graylog2.plugins.slack.transport.SlackWebApi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SlackUsersTest {
+    private MockSlackServer server;
+    private SlackUsers users;
+    private SlackWebApi api;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockSlackServer(2).users("["
+                + "{\"id\":\"U01\",\"name\":\"john\",\"profile\":{\"display_name\":\"John D\",\"email\":\"john@example.com\"}},"
+                + "{\"id\":\"U02\",\"name\":\"jane\",\"deleted\":true,\"profile\":{}}]");
+        users = new SlackUsers(100, 60000);
+        api = new SlackWebApi("xoxb-test", server.apiUrl(), null);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void mentionsAreResolvedInTheBackground() throws Exception {
+        final String text = "@john @John@example.com @jane @here <@U03>";
+        assertEquals(text, users.mention(api, text));
+        users.awaitLookups();
+
+        assertEquals("<@U01> <@U01> @jane @here <@U03>", users.mention(api, text));
+        assertEquals(1, server.userLists());
+    }
+
+    @Test
+    public void missingUsersAreNotLookedUpAgain() throws Exception {
+        users.mention(api, "@nobody");
+        users.awaitLookups();
+        users.mention(api, "@nobody");
+        users.awaitLookups();
+
+        assertEquals(1, server.userLists());
+    }
+
+    @Test
+    public void usersAreNotCachedAsMissingIfTheListingFails() throws Exception {
+        final SlackUsers retrying = new SlackUsers(100, 60000, 0);
+        server.serverErrorBurst(1);
+        retrying.mention(api, "@john");
+        retrying.awaitLookups();
+        assertEquals("@john", retrying.mention(api, "@john"));
+        retrying.awaitLookups();
+
+        assertEquals("<@U01>", retrying.mention(api, "@john"));
+        assertEquals(1, server.userLists());
+    }
+
+    @Test
+    public void failedListingsAreNotRetriedImmediately() throws Exception {
+        server.serverErrorBurst(1);
+        users.mention(api, "@john");
+        users.awaitLookups();
+        users.mention(api, "@john");
+        users.awaitLookups();
+
+        assertEquals(1, server.requests());
+    }
+
+    @Test
+    public void withoutWebApiTextIsUnchanged() {
+        final String text = "@john";
+        assertSame(text, users.mention(null, text));
+        assertEquals(0, server.requests());
+    }
+}
@@ -105,4 +105,13 @@ public class StringReplacementTest {
         assertEquals("", output);
     }
 
+    @Test
+    public void testEscapedValues() {
+        Map<String, Object> fields = new HashMap<String, Object>();
+        fields.put("user", "<!channel>");
+        final String input = "<https://example.com|${user}> ${missing:-<@U024BE7LH>}";
+        String output = StringReplacement.replaceEscapedWithPrefix(input, "@", fields);
+        assertEquals("<https://example.com|@&lt;!channel&gt;> @<@U024BE7LH>", output);
+    }
+
 }
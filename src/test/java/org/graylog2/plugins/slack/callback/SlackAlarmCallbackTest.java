@@ -3,16 +3,41 @@ package org.graylog2.plugins.slack.callback;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import org.graylog2.alerts.AbstractAlertCondition;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageSummary;
+import org.graylog2.plugin.alarms.AlertCondition;
 import org.graylog2.plugin.alarms.callbacks.AlarmCallbackConfigurationException;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.configuration.ConfigurationException;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugins.slack.MockSlackServer;
+import org.graylog2.plugins.slack.SlackClient;
+import org.graylog2.plugins.slack.SlackMessage;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackResponse;
+import org.graylog2.plugins.slack.StageTimer;
+import org.graylog2.plugins.slack.transport.SlackWebApi;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.CoreMatchers.hasItems;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class SlackAlarmCallbackTest {
     private static final ImmutableMap<String, Object> VALID_CONFIG_SOURCE = ImmutableMap.<String, Object>builder()
@@ -107,6 +132,11 @@ public class SlackAlarmCallbackTest {
     	alarmCallback.initialize(validConfigurationWithValue("proxy_address", "vpn://127.0.0.1"));
     }
     
+    @Test(expected = AlarmCallbackConfigurationException.class)
+    public void checkConfigurationFailsIfCustomFieldFormatIsUnknown() throws AlarmCallbackConfigurationException, ConfigurationException {
+        alarmCallback.initialize(validConfigurationWithValue("custom_fields", "level, took_ms|bogus"));
+    }
+
     @Test
     public void testGetRequestedConfiguration() {
         assertThat(alarmCallback.getRequestedConfiguration().asList().keySet(),
@@ -114,6 +144,275 @@ public class SlackAlarmCallbackTest {
                         "message_icon", "graylog2_url", "color", "footer_text", "footer_icon_url", "ts_field"));
     }
 
+    @Test
+    public void parallelRenderingKeepsBacklogOrder() throws Exception {
+        final AtomicReference<SlackMessage> sent = new AtomicReference<>();
+        alarmCallback = new SlackAlarmCallback() {
+            @Override
+            protected SlackClient createClient(Configuration config) {
+                return new SlackClient(config) {
+                    @Override
+                    public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer) {
+                        sent.set(message);
+                        return SlackResponse.SUCCESS;
+                    }
+                };
+            }
+        };
+        final Map<String, Object> config = Maps.newHashMap(VALID_CONFIG_SOURCE);
+        config.put("add_stream_info", false);
+        config.put("backlog_items", 100);
+        config.put("parallel_threshold", 2);
+        config.put("custom_fields", "level, facility");
+        alarmCallback.initialize(new Configuration(config));
+
+        final AlertCondition condition = (AlertCondition) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AlertCondition.class}, (proxy, method, args) -> "getBacklog".equals(method.getName()) ? 100 : null);
+        final Stream stream = (Stream) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Stream.class}, (proxy, method, args) -> "getTitle".equals(method.getName()) ? "test" : "stream-1");
+        final List<MessageSummary> backlog = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final Message message = new Message("message " + i, "source", new DateTime(DateTimeZone.UTC));
+            message.addField("level", i);
+            backlog.add(new MessageSummary("graylog_0", message));
+        }
+        alarmCallback.call(stream, new AbstractAlertCondition.CheckResult(true, condition, "Stream had 100 messages.",
+                new DateTime(DateTimeZone.UTC), backlog));
+
+        final List<SlackMessage.Attachment> attachments = sent.get().attachments;
+        assertEquals(100, attachments.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message " + i, attachments.get(i).text);
+            assertEquals(backlog.get(i).getId(), attachments.get(i).callbackId);
+            assertEquals(1, attachments.get(i).fields.size());
+            assertEquals(String.valueOf(i), attachments.get(i).fields.get(0).value);
+        }
+    }
+
+    @Test
+    public void footerLinkTextIsEscaped() throws Exception {
+        final AtomicReference<SlackMessage> sent = new AtomicReference<>();
+        alarmCallback = new SlackAlarmCallback() {
+            @Override
+            protected SlackClient createClient(Configuration config) {
+                return new SlackClient(config) {
+                    @Override
+                    public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer) {
+                        sent.set(message);
+                        return SlackResponse.SUCCESS;
+                    }
+                };
+            }
+        };
+        final Map<String, Object> config = Maps.newHashMap(VALID_CONFIG_SOURCE);
+        config.put("add_stream_info", false);
+        config.put("backlog_items", 1);
+        config.put("footer_text", "${source}");
+        alarmCallback.initialize(new Configuration(config));
+
+        final AlertCondition condition = (AlertCondition) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AlertCondition.class}, (proxy, method, args) -> "getBacklog".equals(method.getName()) ? 1 : null);
+        final Stream stream = (Stream) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Stream.class}, (proxy, method, args) -> "getTitle".equals(method.getName()) ? "test" : "stream-1");
+        final Message message = new Message("message", "a>b&<!here>", new DateTime(DateTimeZone.UTC));
+        alarmCallback.call(stream, new AbstractAlertCondition.CheckResult(true, condition, "Stream had 1 message.",
+                new DateTime(DateTimeZone.UTC), Collections.singletonList(new MessageSummary("graylog_0", message))));
+
+        final String footer = sent.get().attachments.get(0).footerText;
+        assertTrue(footer, footer.startsWith("<http://graylog2.example.com/"));
+        assertTrue(footer, footer.endsWith("|a&gt;b&amp;&lt;!here&gt;>"));
+    }
+
+    @Test
+    public void fieldValuesInFooterAndMentionsAreEscaped() throws Exception {
+        final AtomicReference<SlackMessage> sent = new AtomicReference<>();
+        alarmCallback = new SlackAlarmCallback() {
+            @Override
+            protected SlackClient createClient(Configuration config) {
+                return new SlackClient(config) {
+                    @Override
+                    public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer) {
+                        sent.set(message);
+                        return SlackResponse.SUCCESS;
+                    }
+                };
+            }
+        };
+        final Map<String, Object> config = Maps.newHashMap(VALID_CONFIG_SOURCE);
+        config.remove("graylog2_url");
+        config.put("add_stream_info", false);
+        config.put("backlog_items", 1);
+        config.put("footer_text", "<https://wiki.example.com|Runbook> ${source}");
+        config.put("notify_user", "${owner}");
+        alarmCallback.initialize(new Configuration(config));
+
+        final AlertCondition condition = (AlertCondition) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AlertCondition.class}, (proxy, method, args) -> "getBacklog".equals(method.getName()) ? 1 : null);
+        final Stream stream = (Stream) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Stream.class}, (proxy, method, args) -> "getTitle".equals(method.getName()) ? "test" : "stream-1");
+        final Message message = new Message("message", "a>b&<!here>", new DateTime(DateTimeZone.UTC));
+        message.addField("owner", "<!channel>");
+        alarmCallback.call(stream, new AbstractAlertCondition.CheckResult(true, condition, "Stream had 1 message.",
+                new DateTime(DateTimeZone.UTC), Collections.singletonList(new MessageSummary("graylog_0", message))));
+
+        assertEquals("<https://wiki.example.com|Runbook> a&gt;b&amp;&lt;!here&gt;",
+                sent.get().attachments.get(0).footerText);
+        assertTrue(sent.get().text, sent.get().text.startsWith("@&lt;!channel&gt; "));
+    }
+
+    @Test
+    public void backlogItemsWithoutMessageAreRendered() throws Exception {
+        final AtomicReference<SlackMessage> sent = new AtomicReference<>();
+        alarmCallback = new SlackAlarmCallback() {
+            @Override
+            protected SlackClient createClient(Configuration config) {
+                return new SlackClient(config) {
+                    @Override
+                    public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer) {
+                        sent.set(message);
+                        return SlackResponse.SUCCESS;
+                    }
+                };
+            }
+        };
+        final Map<String, Object> config = Maps.newHashMap(VALID_CONFIG_SOURCE);
+        config.put("add_stream_info", false);
+        config.put("backlog_items", 1);
+        alarmCallback.initialize(new Configuration(config));
+
+        final AlertCondition condition = (AlertCondition) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AlertCondition.class}, (proxy, method, args) -> "getBacklog".equals(method.getName()) ? 1 : null);
+        final Stream stream = (Stream) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Stream.class}, (proxy, method, args) -> "getTitle".equals(method.getName()) ? "test" : "stream-1");
+        // Reserved fields can't be removed, but messages may still lack one
+        final Message message = new Message("message", "source", new DateTime(DateTimeZone.UTC)) {
+            @Override
+            public String getMessage() {
+                return null;
+            }
+        };
+        alarmCallback.call(stream, new AbstractAlertCondition.CheckResult(true, condition, "Stream had 1 message.",
+                new DateTime(DateTimeZone.UTC), Collections.singletonList(new MessageSummary("graylog_0", message))));
+
+        assertEquals(1, sent.get().attachments.size());
+        assertEquals("", sent.get().attachments.get(0).text);
+    }
+
+    @Test
+    public void followUpsAreRepliesInTheFirstAlertsThread() throws Exception {
+        final List<SlackMessage> sent = new ArrayList<>();
+        alarmCallback = new SlackAlarmCallback() {
+            @Override
+            protected SlackClient createClient(Configuration config) {
+                return new SlackClient(config) {
+                    @Override
+                    public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer)
+                            throws SlackClientException {
+                        sent.add(message);
+                        try {
+                            return SlackResponse.parse(200, null, new ByteArrayInputStream(
+                                    "{\"ok\":true,\"channel\":\"C024BE91L\",\"ts\":\"1.000100\"}"
+                                            .getBytes(StandardCharsets.UTF_8)));
+                        } catch (IOException e) {
+                            throw new SlackClientException("Unexpected response", e);
+                        }
+                    }
+                };
+            }
+        };
+        final Map<String, Object> config = Maps.newHashMap(VALID_CONFIG_SOURCE);
+        config.put("backlog_items", 0);
+        config.put("token", "xoxb-test");
+        config.put("thread_window", 10);
+        alarmCallback.initialize(new Configuration(config));
+
+        final AlertCondition condition = (AlertCondition) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{AlertCondition.class}, (proxy, method, args) -> "getBacklog".equals(method.getName()) ? 0 : "condition-1");
+        final Stream stream = (Stream) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Stream.class}, (proxy, method, args) -> "getTitle".equals(method.getName()) ? "test" : "stream-1");
+        final AlertCondition.CheckResult result = new AbstractAlertCondition.CheckResult(true, condition,
+                "Stream had 1 message.", new DateTime(DateTimeZone.UTC), new ArrayList<>());
+        alarmCallback.call(stream, result);
+        alarmCallback.call(stream, result);
+
+        assertEquals(2, sent.size());
+        assertNull(sent.get(0).threadTs);
+        assertEquals("#test_channel", sent.get(0).channel);
+        assertEquals(1, sent.get(0).attachments.size());
+        assertEquals("1.000100", sent.get(1).threadTs);
+        assertEquals("C024BE91L", sent.get(1).channel);
+        assertTrue(sent.get(1).attachments.isEmpty());
+    }
+
+    @Test
+    public void longBacklogMessagesAreUploadedAsSnippets() throws Exception {
+        try (MockSlackServer server = new MockSlackServer(2)) {
+            final AtomicReference<SlackMessage> sent = new AtomicReference<>();
+            alarmCallback = new SlackAlarmCallback() {
+                @Override
+                protected SlackClient createClient(Configuration config) {
+                    return new SlackClient(config, server.apiUrl()) {
+                        @Override
+                        public SlackResponse send(SlackMessage message, SlackMetrics metrics, StageTimer stageTimer)
+                                throws SlackClientException {
+                            sent.set(message);
+                            return super.send(message, metrics, stageTimer);
+                        }
+                    };
+                }
+
+                @Override
+                protected SlackWebApi createWebApi(Configuration config) {
+                    return new SlackWebApi("xoxb-test", server.apiUrl(), null);
+                }
+            };
+            final Map<String, Object> config = Maps.newHashMap(VALID_CONFIG_SOURCE);
+            config.put("add_stream_info", false);
+            config.put("backlog_items", 2);
+            config.put("token", "xoxb-test");
+            config.put("snippet_threshold", 100);
+            config.remove("notify_user");
+            alarmCallback.initialize(new Configuration(config));
+
+            final StringBuilder stackTrace = new StringBuilder("java.lang.IllegalStateException: broken");
+            for (int i = 0; i < 20; i++) {
+                stackTrace.append("\n\tat org.example.Service.call(Service.java:").append(i).append(')');
+            }
+            final List<MessageSummary> backlog = new ArrayList<>();
+            backlog.add(new MessageSummary("graylog_0", new Message("short", "source", new DateTime(DateTimeZone.UTC))));
+            backlog.add(new MessageSummary("graylog_0",
+                    new Message(stackTrace.toString(), "source", new DateTime(DateTimeZone.UTC))));
+            final AlertCondition condition = (AlertCondition) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{AlertCondition.class}, (proxy, method, args) -> "getBacklog".equals(method.getName()) ? 2 : null);
+            final Stream stream = (Stream) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Stream.class}, (proxy, method, args) -> "getTitle".equals(method.getName()) ? "test" : "stream-1");
+            alarmCallback.call(stream, new AbstractAlertCondition.CheckResult(true, condition, "Stream had 2 messages.",
+                    new DateTime(DateTimeZone.UTC), backlog));
+
+            final List<SlackMessage.Attachment> attachments = sent.get().attachments;
+            assertEquals("short", attachments.get(0).text);
+            assertTrue(attachments.get(1).text.startsWith("java.lang.IllegalStateException: broken \u2026\n"));
+            assertEquals(2, server.requests());
+            assertEquals("/api/files.upload", server.lastPath());
+            assertTrue(server.lastBody().contains(stackTrace));
+            assertTrue(server.lastBody().contains("name=\"thread_ts\"\r\n\r\n1.000100\r\n"));
+        }
+    }
+
+    @Test(expected = AlarmCallbackConfigurationException.class)
+    public void checkConfigurationFailsIfGroupedRepeatsAreThreaded() throws AlarmCallbackConfigurationException {
+        final Map<String, Object> config = Maps.newHashMap(VALID_CONFIG_SOURCE);
+        config.put("incident_key", "${source}");
+        config.put("token", "xoxb-test");
+        config.put("thread_window", 10);
+        alarmCallback.initialize(new Configuration(config));
+    }
+
+    @Test(expected = AlarmCallbackConfigurationException.class)
+    public void checkConfigurationFailsIfGroupedRepeatsHaveNoToken() throws AlarmCallbackConfigurationException {
+        alarmCallback.initialize(validConfigurationWithValue("incident_key", "${source}"));
+    }
+
     private Configuration validConfigurationWithout(final String key) {
         return new Configuration(Maps.filterEntries(VALID_CONFIG_SOURCE, new Predicate<Map.Entry<String, Object>>() {
             @Override
@@ -0,0 +1,144 @@
+package org.graylog2.plugins.slack.loadtest;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.alarms.AlertCondition;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugins.slack.MockSlackServer;
+import org.graylog2.plugins.slack.SlackClient;
+import org.graylog2.plugins.slack.SlackFixtures;
+import org.graylog2.plugins.slack.callback.SlackAlarmCallback;
+import org.graylog2.plugins.slack.output.SlackMessageOutput;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end load test of {@link SlackMessageOutput} and {@link SlackAlarmCallback} against a
+ * {@link MockSlackServer}. Reports messages/sec, p50/p99 delivery latency, drops and retries.
+ *
+ * <p>Run with <code>mvn -Pload-test verify</code>. Settings are system properties:
+ * <ul>
+ * <li><code>loadtest.messages</code> - messages sent per scenario (default 2000)</li>
+ * <li><code>loadtest.threads</code> - concurrent senders (default 8)</li>
+ * <li><code>loadtest.latency</code> - server latency in milliseconds (default 20)</li>
+ * <li><code>loadtest.rateLimitEvery</code> - answer every n-th request with 429 (default 0, off)</li>
+ * <li><code>loadtest.retryAfter</code> - <code>Retry-After</code> seconds sent with 429 (default 1)</li>
+ * <li><code>loadtest.serverErrorBurst</code> - 500 responses injected halfway through (default 0)</li>
+ * <li><code>loadtest.okFalseEvery</code> - answer every n-th Web API request with ok:false (default 0)</li>
+ * <li><code>loadtest.backlog</code> - alert backlog items rendered per notification (default 10)</li>
+ * </ul>
+ */
+public final class SlackLoadHarness {
+    private static final int MESSAGES = Integer.getInteger("loadtest.messages", 2000);
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 8);
+    private static final long LATENCY = Long.getLong("loadtest.latency", 20);
+    private static final int RATE_LIMIT_EVERY = Integer.getInteger("loadtest.rateLimitEvery", 0);
+    private static final int RETRY_AFTER = Integer.getInteger("loadtest.retryAfter", 1);
+    private static final int SERVER_ERROR_BURST = Integer.getInteger("loadtest.serverErrorBurst", 0);
+    private static final int OK_FALSE_EVERY = Integer.getInteger("loadtest.okFalseEvery", 0);
+    private static final int BACKLOG = Integer.getInteger("loadtest.backlog", 10);
+
+    private SlackLoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        try (MockSlackServer server = new MockSlackServer(THREADS * 2)) {
+            server.latency(LATENCY)
+                    .rateLimitEvery(RATE_LIMIT_EVERY, RETRY_AFTER)
+                    .okFalseEvery(OK_FALSE_EVERY, "channel_not_found");
+
+            final Stream stream = SlackFixtures.stream();
+            final SlackMessageOutput output = new SlackMessageOutput(stream, configuration(server, false));
+            final Message message = SlackFixtures.message(0);
+            report("SlackMessageOutput (webhook)", run(server, i -> output.write(message)));
+
+            final SlackAlarmCallback callback = new SlackAlarmCallback() {
+                @Override
+                protected SlackClient createClient(Configuration config) {
+                    return new SlackClient(config, server.apiUrl());
+                }
+            };
+            callback.initialize(configuration(server, true));
+            final AlertCondition.CheckResult result = SlackFixtures.checkResult(BACKLOG);
+            report("SlackAlarmCallback (Web API)", run(server, i -> callback.call(stream, result)));
+        }
+    }
+
+    private static Result run(MockSlackServer server, Send send) throws InterruptedException {
+        final long[] latencies = new long[MESSAGES];
+        final AtomicLong drops = new AtomicLong();
+        final long requestsBefore = server.requests();
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final long start = System.nanoTime();
+        for (int i = 0; i < MESSAGES; i++) {
+            final int n = i;
+            executor.execute(() -> {
+                if (n == MESSAGES / 2 && SERVER_ERROR_BURST > 0) {
+                    server.serverErrorBurst(SERVER_ERROR_BURST);
+                }
+                final long t0 = System.nanoTime();
+                try {
+                    send.send(n);
+                } catch (Exception e) {
+                    drops.incrementAndGet();
+                }
+                latencies[n] = System.nanoTime() - t0;
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.HOURS);
+        final long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        final long requests = server.requests() - requestsBefore;
+        return new Result(elapsed, latencies, drops.get(), Math.max(0, requests - MESSAGES), requests);
+    }
+
+    private static void report(String name, Result result) {
+        System.out.println(name);
+        System.out.printf("  messages      %d (%d threads, %d ms server latency)%n", MESSAGES, THREADS, LATENCY);
+        System.out.printf("  throughput    %.1f msg/s%n", MESSAGES / (result.elapsedNanos / 1e9));
+        System.out.printf("  latency p50   %.2f ms%n", percentile(result.latencies, 0.50) / 1e6);
+        System.out.printf("  latency p99   %.2f ms%n", percentile(result.latencies, 0.99) / 1e6);
+        System.out.printf("  requests      %d%n", result.requests);
+        System.out.printf("  retries       %d%n", result.retries);
+        System.out.printf("  drops         %d%n", result.drops);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static Configuration configuration(MockSlackServer server, boolean token) {
+        final Map<String, Object> config = SlackFixtures.configuration(server.webhookUrl(), BACKLOG);
+        config.put("channel", "#load_test");
+        if (token) {
+            config.put("token", "xoxb-load-test");
+        }
+        return new Configuration(config);
+    }
+
+    private interface Send {
+        void send(int i) throws Exception;
+    }
+
+    private static final class Result {
+        final long elapsedNanos;
+        final long[] latencies;
+        final long drops;
+        final long retries;
+        final long requests;
+
+        Result(long elapsedNanos, long[] latencies, long drops, long retries, long requests) {
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.drops = drops;
+            this.retries = retries;
+            this.requests = requests;
+        }
+    }
+}
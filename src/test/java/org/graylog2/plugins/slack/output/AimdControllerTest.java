@@ -0,0 +1,88 @@
+package org.graylog2.plugins.slack.output;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class AimdControllerTest {
+    private static final long TARGET = TimeUnit.SECONDS.toNanos(1);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    public void growsAdditivelyWhileHealthy() {
+        final AimdController controller = new AimdController(50, 8, TARGET);
+        assertEquals(1, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+
+        controller.onSuccess(0, FAST);
+        assertEquals(2, controller.getBatchSize());
+        assertEquals(2, controller.getConcurrency());
+
+        // About one step per round of concurrent posts
+        controller.onSuccess(0, FAST);
+        controller.onSuccess(0, FAST);
+        assertEquals(2, controller.getConcurrency());
+        controller.onSuccess(0, FAST);
+        assertEquals(3, controller.getBatchSize());
+        assertEquals(3, controller.getConcurrency());
+    }
+
+    @Test
+    public void staysWithinLimits() {
+        final AimdController controller = new AimdController(4, 2, TARGET);
+        for (int i = 0; i < 100; i++) {
+            controller.onSuccess(0, FAST);
+        }
+        assertEquals(4, controller.getBatchSize());
+        assertEquals(2, controller.getConcurrency());
+    }
+
+    @Test
+    public void halvesOnBackoffAndSlowResponses() {
+        final AimdController controller = grown();
+        assertEquals(16, controller.getBatchSize());
+        assertEquals(16, controller.getConcurrency());
+
+        controller.onBackoff(1000, 2000);
+        assertEquals(8, controller.getBatchSize());
+        assertEquals(8, controller.getConcurrency());
+
+        controller.onSuccess(3000, 3000 + TARGET + 1);
+        assertEquals(4, controller.getBatchSize());
+        assertEquals(4, controller.getConcurrency());
+    }
+
+    @Test
+    public void decreasesOncePerCongestion() {
+        final AimdController controller = grown();
+
+        controller.onBackoff(1000, 2000);
+        // Posts sent before the first response of the congestion
+        controller.onBackoff(1100, 2100);
+        controller.onBackoff(1200, 2200);
+        assertEquals(8, controller.getBatchSize());
+
+        controller.onBackoff(2500, 3000);
+        assertEquals(4, controller.getBatchSize());
+    }
+
+    @Test
+    public void neverShrinksBelowOne() {
+        final AimdController controller = new AimdController(10, 10, TARGET);
+        for (int i = 0; i < 10; i++) {
+            controller.onBackoff(i * 10, i * 10 + 1);
+        }
+        assertEquals(1, controller.getBatchSize());
+        assertEquals(1, controller.getConcurrency());
+    }
+
+    private static AimdController grown() {
+        final AimdController controller = new AimdController(16, 16, TARGET);
+        for (int i = 0; i < 1000; i++) {
+            controller.onSuccess(0, FAST);
+        }
+        return controller;
+    }
+}
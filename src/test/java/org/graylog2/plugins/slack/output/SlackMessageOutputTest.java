@@ -1,18 +1,36 @@
 package org.graylog2.plugins.slack.output;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import org.graylog2.plugin.Message;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.outputs.MessageOutputConfigurationException;
+import org.graylog2.plugins.slack.MockSlackServer;
+import org.graylog2.plugins.slack.SlackClient;
+import org.graylog2.plugins.slack.SlackMetrics;
+import org.graylog2.plugins.slack.SlackStatistics;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.Test;
 
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.CoreMatchers.hasItems;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SlackMessageOutputTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     private static final ImmutableMap<String, Object> VALID_CONFIG_SOURCE = ImmutableMap.<String, Object>builder()
             .put("webhook_url", "https://www.example.org/")
             .put("channel", "#test_channel")
@@ -89,6 +107,218 @@ public class SlackMessageOutputTest {
         new SlackMessageOutput(null, validConfigurationWithValue("proxy_address", "vpn://127.0.0.1"));
     }
     
+    @Test
+    public void writeSendsEveryMessageWithoutBatching() throws Exception {
+        try (MockSlackServer server = new MockSlackServer()) {
+            final SlackStatistics statistics = new SlackStatistics(new MetricRegistry());
+            final SlackMessageOutput output = output(server, 1, statistics);
+            for (int i = 0; i < 5; i++) {
+                output.write(message(i));
+            }
+
+            assertEquals(5, server.accepted());
+            assertNull(output.getMetrics().getGauge(SlackMetrics.QUEUE_DEPTH));
+            output.stop();
+        }
+    }
+
+    @Test
+    public void outputsOfOneStreamHaveTheirOwnMetrics() throws Exception {
+        try (MockSlackServer server = new MockSlackServer()) {
+            final MetricRegistry registry = new MetricRegistry();
+            final SlackStatistics statistics = new SlackStatistics(registry);
+            final SlackMessageOutput first = output(server, 10, statistics);
+            final SlackMessageOutput second = output(server, 10, statistics);
+            first.write(message(0));
+
+            assertNotEquals(first.getMetrics().getName(), second.getMetrics().getName());
+            assertEquals(0, second.getMetrics().getRendered());
+
+            first.stop();
+            assertEquals(1, statistics.getAll().size());
+            assertNotNull(second.getMetrics().getGauge(SlackMetrics.QUEUE_DEPTH));
+            assertTrue(registry.getGauges().containsKey(
+                    MetricRegistry.name(second.getMetrics().getName(), SlackMetrics.QUEUE_DEPTH)));
+            second.stop();
+        }
+    }
+
+    @Test
+    public void writeBatchesQueuedMessages() throws Exception {
+        try (MockSlackServer server = new MockSlackServer()) {
+            server.latency(20).recordBodies();
+            final SlackStatistics statistics = new SlackStatistics(new MetricRegistry());
+            final SlackMessageOutput output = output(server, 10, statistics);
+            final SlackMetrics metrics = output.getMetrics();
+            assertNotNull(metrics.getGauge(SlackMetrics.BATCH_SIZE));
+            for (int i = 0; i < 100; i++) {
+                output.write(message(i));
+            }
+            output.stop();
+
+            // stop() waits until every queued message was delivered
+            assertEquals(0, metrics.getDropped());
+            assertTrue(server.accepted() < 100);
+            final Set<String> delivered = new HashSet<>();
+            for (String body : server.bodies()) {
+                for (String line : OBJECT_MAPPER.readTree(body).get("text").asText().split("\n")) {
+                    delivered.add(line.substring(line.indexOf(": ") + 2));
+                }
+            }
+            for (int i = 0; i < 100; i++) {
+                assertTrue("message " + i, delivered.contains("message " + i));
+            }
+        }
+    }
+
+    @Test
+    public void writeRetriesRateLimitedBatches() throws Exception {
+        try (MockSlackServer server = new MockSlackServer()) {
+            server.rateLimitNext(1, 1);
+            final SlackStatistics statistics = new SlackStatistics(new MetricRegistry());
+            final SlackMessageOutput output = output(server, 10, statistics);
+            final SlackMetrics metrics = output.getMetrics();
+            output.write(message(0));
+            output.stop();
+
+            assertEquals(0, metrics.getDropped());
+            assertEquals(1, metrics.getRetries());
+            assertEquals(1, server.rateLimited());
+            assertEquals(1, server.accepted());
+        }
+    }
+
+    @Test
+    public void writeDeliversToEveryDestinationIndependently() throws Exception {
+        try (MockSlackServer server = new MockSlackServer();
+             MockSlackServer other = new MockSlackServer();
+             MockSlackServer failing = new MockSlackServer()) {
+            failing.serverErrorBurst(1000);
+            final Map<String, Object> config = config(server, 1);
+            config.put("destinations", other.webhookUrl() + " #other,\n" + failing.webhookUrl());
+            final Configuration configuration = new Configuration(config);
+            final SlackStatistics statistics = new SlackStatistics(new MetricRegistry());
+            final SlackMessageOutput output =
+                    new SlackMessageOutput(null, configuration, new SlackClient(configuration), statistics);
+            final SlackMetrics metrics = output.getMetrics();
+            final SlackMetrics failingMetrics = statistics.get(SlackMessageOutput.class, null, metrics.getInstance() + ".destination2");
+            for (int i = 0; i < 10; i++) {
+                output.write(message(i));
+            }
+            output.stop();
+
+            assertEquals(10, metrics.getRendered());
+            assertEquals(0, metrics.getDropped());
+            assertEquals(10, server.accepted());
+            assertTrue(server.lastBody().contains("\"channel\":\"#test_channel\""));
+            assertEquals(10, other.accepted());
+            assertTrue(other.lastBody().contains("\"channel\":\"#other\""));
+            assertEquals(0, failing.accepted());
+            assertEquals(10, failingMetrics.getDropped());
+            assertEquals(0, metrics.getRetries());
+            assertTrue(failingMetrics.getRetries() > 0);
+        }
+    }
+
+    @Test
+    public void writeSkipsStaleQueuedMessages() throws Exception {
+        try (MockSlackServer server = new MockSlackServer()) {
+            final Map<String, Object> config = config(server, 10);
+            config.put("max_age", 1);
+            config.put("send_concurrency", 1);
+            final Configuration configuration = new Configuration(config);
+            final SlackStatistics statistics = new SlackStatistics(new MetricRegistry());
+            final SlackMessageOutput output =
+                    new SlackMessageOutput(null, configuration, new SlackClient(configuration), statistics);
+            final SlackMetrics metrics = output.getMetrics();
+            for (int i = 0; i < 3; i++) {
+                output.write(new Message("old " + i, "source", new DateTime(DateTimeZone.UTC).minusHours(2)));
+            }
+            output.write(message(3));
+            output.stop();
+
+            assertEquals(3, metrics.getStale());
+            assertEquals(0, metrics.getDropped());
+            // the dispatcher may find the queue empty between the stale messages, and summarize early
+            assertTrue(server.accepted() >= 2);
+            assertTrue(server.lastBody().contains("older than 1 minute skipped"));
+        }
+    }
+
+    @Test
+    public void writeSkipsFilteredMessages() throws Exception {
+        try (MockSlackServer server = new MockSlackServer()) {
+            final Map<String, Object> config = config(server, 1);
+            config.put("filter", "level <= 3");
+            final Configuration configuration = new Configuration(config);
+            final SlackStatistics statistics = new SlackStatistics(new MetricRegistry());
+            final SlackMessageOutput output =
+                    new SlackMessageOutput(null, configuration, new SlackClient(configuration), statistics);
+            final SlackMetrics metrics = output.getMetrics();
+            for (int i = 0; i < 6; i++) {
+                final Message message = message(i);
+                message.addField("level", i);
+                output.write(message);
+            }
+
+            assertEquals(4, server.accepted());
+            assertEquals(2, metrics.getFiltered());
+            assertEquals(4, metrics.getRendered());
+            output.stop();
+        }
+    }
+
+    @Test(expected = MessageOutputConfigurationException.class)
+    public void checkConfigurationFailsIfFilterIsInvalid() throws MessageOutputConfigurationException {
+        new SlackMessageOutput(null, validConfigurationWithValue("filter", "level <"));
+    }
+
+    @Test(expected = MessageOutputConfigurationException.class)
+    public void checkConfigurationFailsIfDestinationIsInvalid() throws MessageOutputConfigurationException {
+        new SlackMessageOutput(null, validConfigurationWithValue("destinations", "ftp://example.net #other"));
+    }
+
+    @Test
+    public void constructorFailsIfGroupedRepeatsAreBatched() {
+        final Map<String, Object> config = Maps.newHashMap(VALID_CONFIG_SOURCE);
+        config.put("incident_key", "${source}");
+        config.put("token", "xoxb-test");
+        config.put("batch_size", 10);
+        final Configuration configuration = new Configuration(config);
+        final MetricRegistry registry = new MetricRegistry();
+        try {
+            new SlackMessageOutput(null, configuration, new SlackClient(configuration), new SlackStatistics(registry));
+            fail("Expected MessageOutputConfigurationException");
+        } catch (MessageOutputConfigurationException e) {
+            // Rejected before any delivery queue or metric was created
+            assertTrue(registry.getMetrics().isEmpty());
+        }
+    }
+
+    @Test(expected = MessageOutputConfigurationException.class)
+    public void constructorFailsIfGroupedRepeatsHaveNoToken() throws MessageOutputConfigurationException {
+        new SlackMessageOutput(null, validConfigurationWithValue("incident_key", "${source}"));
+    }
+
+    private static SlackMessageOutput output(MockSlackServer server, int batchSize, SlackStatistics statistics)
+            throws MessageOutputConfigurationException {
+        final Configuration configuration = new Configuration(config(server, batchSize));
+        return new SlackMessageOutput(null, configuration, new SlackClient(configuration), statistics);
+    }
+
+    private static Map<String, Object> config(MockSlackServer server, int batchSize) {
+        final Map<String, Object> config = Maps.newHashMap(VALID_CONFIG_SOURCE);
+        config.put("webhook_url", server.webhookUrl());
+        config.put("short_mode", true);
+        config.put("backlog_items", 0);
+        config.put("batch_size", batchSize);
+        return config;
+    }
+
+    private static Message message(int i) {
+        return new Message("message " + i, "source", new DateTime(DateTimeZone.UTC));
+    }
+
     private Configuration validConfigurationWithout(final String key) {
         return new Configuration(Maps.filterEntries(VALID_CONFIG_SOURCE, new Predicate<Map.Entry<String, Object>>() {
             @Override
@@ -0,0 +1,83 @@
+package org.graylog2.plugins.slack.rest;
+
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlackRequestVerifierTest {
+    private static final String SECRET = "8f742231b10e8888abcd99yyyzzz85a5";
+    private static final String TIMESTAMP = "1531420618";
+    private static final long NOW = 1531420618L;
+    private static final byte[] BODY = "payload=%7B%22type%22%3A%22interactive_message%22%7D".getBytes(StandardCharsets.UTF_8);
+
+    private final SlackRequestVerifier verifier = new SlackRequestVerifier(SECRET, 300);
+
+    @Test
+    public void testValidSignature() throws Exception {
+        assertTrue(verifier.verify(TIMESTAMP, sign(SECRET, TIMESTAMP, BODY), BODY, NOW));
+    }
+
+    @Test
+    public void testValidSignatureReusedOnSameThread() throws Exception {
+        final String signature = sign(SECRET, TIMESTAMP, BODY);
+        assertTrue(verifier.verify(TIMESTAMP, signature, BODY, NOW));
+        assertTrue(verifier.verify(TIMESTAMP, signature, BODY, NOW + 10));
+    }
+
+    @Test
+    public void testWrongSecret() throws Exception {
+        assertFalse(verifier.verify(TIMESTAMP, sign("other", TIMESTAMP, BODY), BODY, NOW));
+    }
+
+    @Test
+    public void testTamperedBody() throws Exception {
+        final byte[] tampered = "payload=%7B%7D".getBytes(StandardCharsets.UTF_8);
+        assertFalse(verifier.verify(TIMESTAMP, sign(SECRET, TIMESTAMP, BODY), tampered, NOW));
+    }
+
+    @Test
+    public void testStaleTimestamp() throws Exception {
+        assertFalse(verifier.verify(TIMESTAMP, sign(SECRET, TIMESTAMP, BODY), BODY, NOW + 301));
+    }
+
+    @Test
+    public void testMalformedHeaders() {
+        assertFalse(verifier.verify(null, null, BODY, NOW));
+        assertFalse(verifier.verify("abc", "v0=00", BODY, NOW));
+        assertFalse(verifier.verify(TIMESTAMP, "v0=zz", BODY, NOW));
+        assertFalse(verifier.verify(TIMESTAMP, "v1=" + repeat('0', 64), BODY, NOW));
+        assertFalse(verifier.verify(TIMESTAMP, "v0=" + repeat('g', 64), BODY, NOW));
+    }
+
+    @Test
+    public void testDisabledWithoutSecret() {
+        final SlackRequestVerifier disabled = new SlackRequestVerifier(null, 300);
+        assertFalse(disabled.isEnabled());
+        assertTrue(disabled.verify(null, null, BODY, NOW));
+    }
+
+    private static String sign(String secret, String timestamp, byte[] body) throws Exception {
+        final Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        mac.update(("v0:" + timestamp + ":").getBytes(StandardCharsets.UTF_8));
+        final byte[] digest = mac.doFinal(body);
+        final StringBuilder sb = new StringBuilder("v0=");
+        for (byte b : digest) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static String repeat(char c, int count) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}